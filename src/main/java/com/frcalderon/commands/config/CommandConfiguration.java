@@ -0,0 +1,18 @@
+package com.frcalderon.commands.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class CommandConfiguration {
+
+    @Bean
+    public ThreadPoolTaskExecutor commandWriterExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setThreadNamePrefix("command-writer-");
+        return executor;
+    }
+}
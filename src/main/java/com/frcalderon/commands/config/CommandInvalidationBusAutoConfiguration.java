@@ -0,0 +1,35 @@
+package com.frcalderon.commands.config;
+
+import com.frcalderon.commands.service.CommandInvalidationBus;
+import com.frcalderon.commands.service.InMemoryCommandInvalidationBus;
+import com.frcalderon.commands.service.PostgresCommandInvalidationBus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+
+// an auto-configuration, so a CommandInvalidationBus bean of the application replaces these
+@AutoConfiguration(after = {DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class})
+public class CommandInvalidationBusAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean(CommandInvalidationBus.class)
+    @ConditionalOnProperty(name = "ms-commands.commands.cache.bus", havingValue = "postgres")
+    @ConditionalOnBean(DataSource.class)
+    public CommandInvalidationBus postgresCommandInvalidationBus(DataSource dataSource,
+                                                                 @Value("${ms-commands.commands.cache.channel:command_invalidation}") String channel) {
+        return new PostgresCommandInvalidationBus(dataSource, channel);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(CommandInvalidationBus.class)
+    public CommandInvalidationBus commandInvalidationBus() {
+        return new InMemoryCommandInvalidationBus();
+    }
+}
@@ -0,0 +1,25 @@
+package com.frcalderon.commands.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ThreadFactory;
+
+// with ms-commands.execution.mode=virtual, Tomcat runs every request on its own virtual thread
+@Configuration
+public class ExecutionConfiguration {
+
+    public static final String VIRTUAL_MODE = "virtual";
+
+    @Bean
+    @ConditionalOnProperty(name = "ms-commands.execution.mode", havingValue = VIRTUAL_MODE)
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadsProtocolHandlerCustomizer(
+            @Value("${ms-commands.execution.tomcat-thread-prefix:http-virtual-}") String threadPrefix) {
+        ThreadFactory threadFactory = VirtualThreads.factory(threadPrefix);
+        return protocolHandler -> protocolHandler.setExecutor(task -> threadFactory.newThread(task).start());
+    }
+}
@@ -0,0 +1,118 @@
+package com.frcalderon.commands.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+@Configuration
+public class ProductsClientConfiguration {
+
+    private static final String POOL_NAME = "ms-products";
+
+    @Value("${ms-commands.ms-products.http.max-connections:50}")
+    private int MAX_CONNECTIONS;
+
+    @Value("${ms-commands.ms-products.http.max-connections-per-route:20}")
+    private int MAX_CONNECTIONS_PER_ROUTE;
+
+    @Value("${ms-commands.ms-products.http.connect-timeout:2s}")
+    private Duration CONNECT_TIMEOUT;
+
+    @Value("${ms-commands.ms-products.http.read-timeout:10s}")
+    private Duration READ_TIMEOUT;
+
+    @Value("${ms-commands.ms-products.http.idle-timeout:30s}")
+    private Duration IDLE_TIMEOUT;
+
+    @Value("${ms-commands.ms-products.http.http2:false}")
+    private boolean HTTP2;
+
+    @Bean
+    public PoolingHttpClientConnectionManager productsConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(MAX_CONNECTIONS)
+                .setMaxConnPerRoute(MAX_CONNECTIONS_PER_ROUTE)
+                .setDefaultSocketConfig(SocketConfig.custom()
+                        .setSoTimeout(Timeout.ofMilliseconds(READ_TIMEOUT.toMillis()))
+                        .build())
+                .build();
+    }
+
+    @Bean
+    public RestTemplate productsRestTemplate(PoolingHttpClientConnectionManager productsConnectionManager) {
+        return new RestTemplate(HTTP2 ? http2RequestFactory() : pooledRequestFactory(productsConnectionManager));
+    }
+
+    @Bean
+    public MeterBinder productsConnectionPoolMetrics(PoolingHttpClientConnectionManager productsConnectionManager) {
+        return registry -> {
+            Gauge.builder("httpcomponents.httpclient.pool.total.max", productsConnectionManager,
+                            connectionManager -> connectionManager.getTotalStats().getMax())
+                    .tag("httpclient", POOL_NAME)
+                    .description("The configured maximum number of allowed persistent connections for all routes")
+                    .register(registry);
+            Gauge.builder("httpcomponents.httpclient.pool.total.connections", productsConnectionManager,
+                            connectionManager -> connectionManager.getTotalStats().getAvailable())
+                    .tag("httpclient", POOL_NAME)
+                    .tag("state", "available")
+                    .description("The number of persistent and available connections for all routes")
+                    .register(registry);
+            Gauge.builder("httpcomponents.httpclient.pool.total.connections", productsConnectionManager,
+                            connectionManager -> connectionManager.getTotalStats().getLeased())
+                    .tag("httpclient", POOL_NAME)
+                    .tag("state", "leased")
+                    .description("The number of persistent and leased connections for all routes")
+                    .register(registry);
+            Gauge.builder("httpcomponents.httpclient.pool.total.pending", productsConnectionManager,
+                            connectionManager -> connectionManager.getTotalStats().getPending())
+                    .tag("httpclient", POOL_NAME)
+                    .description("The number of connection requests being blocked awaiting a free connection for all routes")
+                    .register(registry);
+            Gauge.builder("httpcomponents.httpclient.pool.route.max.default", productsConnectionManager,
+                            PoolingHttpClientConnectionManager::getDefaultMaxPerRoute)
+                    .tag("httpclient", POOL_NAME)
+                    .description("The configured default maximum number of allowed persistent connections per route")
+                    .register(registry);
+        };
+    }
+
+    private ClientHttpRequestFactory pooledRequestFactory(PoolingHttpClientConnectionManager connectionManager) {
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(CONNECT_TIMEOUT.toMillis()))
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(CONNECT_TIMEOUT.toMillis()))
+                        .setResponseTimeout(Timeout.ofMilliseconds(READ_TIMEOUT.toMillis()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(IDLE_TIMEOUT.toMillis()))
+                .build();
+
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+
+    private ClientHttpRequestFactory http2RequestFactory() {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build();
+
+        return new Http2ClientRequestFactory(httpClient, READ_TIMEOUT);
+    }
+}
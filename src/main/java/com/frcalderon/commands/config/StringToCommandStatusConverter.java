@@ -0,0 +1,14 @@
+package com.frcalderon.commands.config;
+
+import com.frcalderon.commands.model.CommandStatus;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+@Component
+public class StringToCommandStatusConverter implements Converter<String, CommandStatus> {
+
+    @Override
+    public CommandStatus convert(String source) {
+        return CommandStatus.fromLabel(source.trim());
+    }
+}
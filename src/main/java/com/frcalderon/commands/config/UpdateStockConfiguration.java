@@ -0,0 +1,45 @@
+package com.frcalderon.commands.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class UpdateStockConfiguration {
+
+    @Value("${ms-commands.update-stock.dispatch.concurrency:8}")
+    private int DISPATCH_CONCURRENCY;
+
+    @Value("${ms-commands.execution.mode:platform}")
+    private String EXECUTION_MODE;
+
+    @Bean
+    public AsyncTaskExecutor updateStockDispatchExecutor() {
+        // virtual lanes stay capped at the dispatch concurrency, so ms-products sees the same parallelism
+        if (ExecutionConfiguration.VIRTUAL_MODE.equals(EXECUTION_MODE)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(VirtualThreads.factory("update-stock-"));
+            executor.setConcurrencyLimit(DISPATCH_CONCURRENCY);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(DISPATCH_CONCURRENCY);
+        executor.setMaxPoolSize(DISPATCH_CONCURRENCY);
+        executor.setThreadNamePrefix("update-stock-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor updateStockTriggerExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setThreadNamePrefix("update-stock-trigger-");
+        return executor;
+    }
+}
@@ -0,0 +1,46 @@
+package com.frcalderon.commands.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// Hibernate cannot declare partial indexes; only PostgreSQL gets them
+@Component
+@Slf4j
+public class UpdateStockIndexInitializer {
+
+    private static final Map<String, String> INDEXES = Map.of(
+            "update_stock_unsent_idx", "on update_stock (id) where sent = false and dead = false",
+            "update_stock_unsent_created_at_idx", "on update_stock (created_at) where sent = false and dead = false",
+            "update_stock_dead_idx", "on update_stock (id) where dead = true"
+    );
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(database)) {
+            return;
+        }
+
+        // concurrent builds do not block outbox writes, but one that was interrupted leaves an invalid index behind
+        INDEXES.forEach((name, definition) -> {
+            Integer invalid = jdbcTemplate.queryForObject("select count(*) from pg_index i join pg_class c on c.oid = i.indexrelid " +
+                    "where c.relname = ? and not i.indisvalid", Integer.class, name);
+            if (invalid != null && invalid > 0) {
+                log.warn("Rebuilding the invalid index {}", name);
+                jdbcTemplate.execute("drop index concurrently if exists " + name);
+            }
+            jdbcTemplate.execute("create index concurrently if not exists " + name + " " + definition);
+        });
+    }
+}
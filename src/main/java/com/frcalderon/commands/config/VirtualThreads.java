@@ -0,0 +1,13 @@
+package com.frcalderon.commands.config;
+
+import java.util.concurrent.ThreadFactory;
+
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    static ThreadFactory factory(String prefix) {
+        return Thread.ofVirtual().name(prefix, 0).factory();
+    }
+}
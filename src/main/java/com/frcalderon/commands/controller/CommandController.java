@@ -1,43 +1,110 @@
 package com.frcalderon.commands.controller;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.frcalderon.commands.controller.dto.AcceptedCommandResponse;
+import com.frcalderon.commands.controller.dto.CommandBatchResponse;
+import com.frcalderon.commands.controller.dto.CommandPageResponse;
 import com.frcalderon.commands.controller.dto.CommandRequest;
 import com.frcalderon.commands.controller.dto.CommandResponse;
+import com.frcalderon.commands.controller.dto.CommandStatusRequest;
+import com.frcalderon.commands.controller.dto.CommandStatusResponse;
+import com.frcalderon.commands.controller.dto.CommandTransitionRequest;
 import com.frcalderon.commands.model.Command;
+import com.frcalderon.commands.model.CommandSort;
+import com.frcalderon.commands.model.CommandStatus;
+import com.frcalderon.commands.repository.CommandFilter;
 import com.frcalderon.commands.service.CommandService;
+import com.frcalderon.commands.service.CommandStatusResult;
+import com.frcalderon.commands.service.CommandWriteBehind;
+import com.frcalderon.commands.service.IdempotencyStore;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/commands")
 public class CommandController {
 
+    private static final String PREFER = "Prefer";
+
+    private static final String PREFERENCE_APPLIED = "Preference-Applied";
+
+    private static final String RESPOND_ASYNC = "respond-async";
+
     @Autowired
     private CommandService commandService;
 
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private CommandWriteBehind commandWriteBehind;
+
     @GetMapping
     @ResponseStatus(HttpStatus.OK)
-    public List<CommandResponse> getAllCommands() {
-        List<Command> commands = this.commandService.getAllCommands();
-        return commands.stream().map(CommandResponse::new).collect(Collectors.toList());
+    public CommandPageResponse getCommands(@RequestParam(required = false) List<CommandStatus> status,
+                                           @RequestParam(required = false) @DateTimeFormat(pattern = "dd-MM-yyyy") LocalDate deliveryFrom,
+                                           @RequestParam(required = false) @DateTimeFormat(pattern = "dd-MM-yyyy") LocalDate deliveryTo,
+                                           @RequestParam(required = false) Long productId,
+                                           @RequestParam(defaultValue = "id") String sort,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(required = false) Integer limit) {
+        CommandFilter filter = new CommandFilter(status, deliveryFrom, deliveryTo, productId);
+        return new CommandPageResponse(this.commandService.getCommands(filter, CommandSort.fromParam(sort), cursor, limit));
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportCommands(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        this.commandService.exportCommands(response.getOutputStream());
     }
 
     @GetMapping("/{id}")
     @ResponseStatus(HttpStatus.OK)
     public CommandResponse getCommand(@PathVariable Long id) {
-        Command command = this.commandService.getCommand(id);
-        return new CommandResponse(command);
+        return this.commandService.getCommand(id);
     }
 
     @PostMapping
-    @ResponseStatus(HttpStatus.CREATED)
-    public CommandResponse createCommand(@RequestBody CommandRequest commandRequest) throws JsonProcessingException {
-        Command command = this.commandService.createCommand(commandRequest);
-        return new CommandResponse(command);
+    public ResponseEntity<Object> createCommand(@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey, @RequestHeader(value = PREFER, required = false) String prefer, @RequestBody @Valid CommandRequest commandRequest) throws JsonProcessingException {
+        if (commandWriteBehind.isEnabled() && prefer != null && prefer.contains(RESPOND_ASYNC)) {
+            AcceptedCommandResponse accepted = this.idempotencyStore.execute(idempotencyKey, List.of("POST /commands async", commandRequest),
+                    AcceptedCommandResponse.class, () -> new AcceptedCommandResponse(this.commandWriteBehind.accept(commandRequest)));
+            return ResponseEntity.accepted()
+                    .location(URI.create("/commands/accepted/" + accepted.getTrackingId()))
+                    .header(PREFERENCE_APPLIED, RESPOND_ASYNC)
+                    .body(accepted);
+        }
+
+        CommandResponse created = this.idempotencyStore.execute(idempotencyKey, List.of("POST /commands", commandRequest),
+                CommandResponse.class, () -> new CommandResponse(this.commandService.createCommand(commandRequest)));
+        return ResponseEntity.status(HttpStatus.CREATED).body(created);
+    }
+
+    @GetMapping("/accepted/{trackingId}")
+    @ResponseStatus(HttpStatus.OK)
+    public AcceptedCommandResponse getAcceptedCommand(@PathVariable UUID trackingId) {
+        return new AcceptedCommandResponse(this.commandWriteBehind.getAccepted(trackingId));
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public CommandBatchResponse createCommands(HttpServletRequest request) throws IOException {
+        return new CommandBatchResponse(this.commandService.createCommands(request.getInputStream()));
     }
 
     @PutMapping("/{id}")
@@ -53,38 +120,52 @@ public class CommandController {
         this.commandService.deleteCommand(id);
     }
 
+    @PutMapping("/status")
+    @ResponseStatus(HttpStatus.OK)
+    public CommandStatusResponse changeStatuses(@RequestBody @Valid CommandStatusRequest commandStatusRequest) {
+        CommandStatusResult result = this.commandService.changeStatuses(commandStatusRequest.getIds(), commandStatusRequest.getStatus());
+        return new CommandStatusResponse(commandStatusRequest.getStatus(), result.moved(), result.rejected());
+    }
+
+    @PutMapping("/{id}/status")
+    @ResponseStatus(HttpStatus.OK)
+    public CommandResponse changeStatus(@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey, @PathVariable Long id, @RequestBody @Valid CommandTransitionRequest commandTransitionRequest) throws JsonProcessingException {
+        return transition(idempotencyKey, id, commandTransitionRequest.getStatus());
+    }
+
     @PutMapping("/todo/{id}")
     @ResponseStatus(HttpStatus.OK)
-    public CommandResponse toDoCommand(@PathVariable Long id) throws JsonProcessingException {
-        Command command = this.commandService.commandToDo(id);
-        return new CommandResponse(command);
+    public CommandResponse toDoCommand(@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey, @PathVariable Long id) throws JsonProcessingException {
+        return transition(idempotencyKey, id, CommandStatus.TO_DO);
     }
 
     @PutMapping("/inprogress/{id}")
     @ResponseStatus(HttpStatus.OK)
-    public CommandResponse inProgressCommand(@PathVariable Long id) {
-        Command command = this.commandService.commandInProgress(id);
-        return new CommandResponse(command);
+    public CommandResponse inProgressCommand(@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey, @PathVariable Long id) throws JsonProcessingException {
+        return transition(idempotencyKey, id, CommandStatus.IN_PROGRESS);
     }
 
     @PutMapping("/prepared/{id}")
     @ResponseStatus(HttpStatus.OK)
-    public CommandResponse preparedCommand(@PathVariable Long id) {
-        Command command = this.commandService.commandPrepared(id);
-        return new CommandResponse(command);
+    public CommandResponse preparedCommand(@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey, @PathVariable Long id) throws JsonProcessingException {
+        return transition(idempotencyKey, id, CommandStatus.PREPARED);
     }
 
     @PutMapping("/delivered/{id}")
     @ResponseStatus(HttpStatus.OK)
-    public CommandResponse deliveredCommand(@PathVariable Long id) {
-        Command command = this.commandService.commandDelivered(id);
-        return new CommandResponse(command);
+    public CommandResponse deliveredCommand(@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey, @PathVariable Long id) throws JsonProcessingException {
+        return transition(idempotencyKey, id, CommandStatus.DELIVERED);
     }
 
     @PutMapping("/cancelled/{id}")
     @ResponseStatus(HttpStatus.OK)
-    public CommandResponse cancelledCommand(@PathVariable Long id) throws JsonProcessingException {
-        Command command = this.commandService.commandCancelled(id);
-        return new CommandResponse(command);
+    public CommandResponse cancelledCommand(@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey, @PathVariable Long id) throws JsonProcessingException {
+        return transition(idempotencyKey, id, CommandStatus.CANCELLED);
+    }
+
+    // the aliases share the fingerprint of the generic endpoint, so a key replays whichever route a retry takes
+    private CommandResponse transition(String idempotencyKey, Long id, CommandStatus status) throws JsonProcessingException {
+        return this.idempotencyStore.execute(idempotencyKey, List.of("PUT /commands/{id}/status", id, status),
+                CommandResponse.class, () -> this.commandService.changeStatus(id, status));
     }
 }
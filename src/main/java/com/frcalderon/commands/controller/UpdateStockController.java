@@ -0,0 +1,39 @@
+package com.frcalderon.commands.controller;
+
+import com.frcalderon.commands.controller.dto.RequeueResponse;
+import com.frcalderon.commands.controller.dto.UpdateStockResponse;
+import com.frcalderon.commands.service.UpdateStockService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/update-stock")
+public class UpdateStockController {
+
+    @Autowired
+    private UpdateStockService updateStockService;
+
+    @GetMapping("/dead")
+    @ResponseStatus(HttpStatus.OK)
+    public List<UpdateStockResponse> getDeadUpdateStocks() {
+        return this.updateStockService.getDeadUpdateStocks().stream()
+                .map(UpdateStockResponse::new)
+                .toList();
+    }
+
+    @PutMapping("/dead/requeue")
+    @ResponseStatus(HttpStatus.OK)
+    public RequeueResponse requeueDeadUpdateStocks() {
+        int requeued = this.updateStockService.requeueDeadUpdateStocks();
+        return new RequeueResponse(requeued);
+    }
+
+    @PutMapping("/dead/{id}/requeue")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void requeueDeadUpdateStock(@PathVariable Long id) {
+        this.updateStockService.requeueDeadUpdateStock(id);
+    }
+}
@@ -0,0 +1,31 @@
+package com.frcalderon.commands.controller.dto;
+
+import com.frcalderon.commands.service.AcceptedCommand;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AcceptedCommandResponse {
+
+    public AcceptedCommandResponse(AcceptedCommand acceptedCommand) {
+        this.trackingId = acceptedCommand.trackingId();
+        this.state = acceptedCommand.state();
+        this.commandId = acceptedCommand.commandId();
+        this.error = acceptedCommand.error();
+    }
+
+    private UUID trackingId;
+
+    private AcceptedCommand.State state;
+
+    private Long commandId;
+
+    private String error;
+}
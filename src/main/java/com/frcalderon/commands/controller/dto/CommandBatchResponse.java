@@ -0,0 +1,28 @@
+package com.frcalderon.commands.controller.dto;
+
+import com.frcalderon.commands.service.CommandBatchResult;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CommandBatchResponse {
+
+    public CommandBatchResponse(List<CommandBatchResult> results) {
+        this.created = (int) results.stream().filter(CommandBatchResult::created).count();
+        this.rejected = results.size() - this.created;
+        this.results = results;
+    }
+
+    private int created;
+
+    private int rejected;
+
+    private List<CommandBatchResult> results;
+}
@@ -0,0 +1,25 @@
+package com.frcalderon.commands.controller.dto;
+
+import com.frcalderon.commands.service.CommandPage;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CommandPageResponse {
+
+    public CommandPageResponse(CommandPage commandPage) {
+        this.commands = commandPage.commands();
+        this.nextCursor = commandPage.nextCursor();
+    }
+
+    private List<CommandResponse> commands;
+
+    private String nextCursor;
+}
@@ -2,6 +2,7 @@ package com.frcalderon.commands.controller.dto;
 
 import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
 import lombok.Builder;
 import lombok.Data;
@@ -18,6 +19,7 @@ public class CommandProductRequest {
     private String productName;
 
     @NotNull
+    @Positive
     private Integer quantity;
 
     @NotNull
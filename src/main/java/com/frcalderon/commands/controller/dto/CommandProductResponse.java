@@ -0,0 +1,35 @@
+package com.frcalderon.commands.controller.dto;
+
+import com.frcalderon.commands.model.CommandProduct;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CommandProductResponse {
+
+    public CommandProductResponse(CommandProduct commandProduct) {
+        this.id = commandProduct.getId();
+        this.productId = commandProduct.getProductId();
+        this.productName = commandProduct.getProductName();
+        this.quantity = commandProduct.getQuantity();
+        this.unitPrice = commandProduct.getUnitPrice();
+        this.totalPrice = commandProduct.getTotalPrice();
+    }
+
+    private Long id;
+
+    private Long productId;
+
+    private String productName;
+
+    private Integer quantity;
+
+    private Double unitPrice;
+
+    private Double totalPrice;
+}
@@ -1,5 +1,6 @@
 package com.frcalderon.commands.controller.dto;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import lombok.Builder;
 import lombok.Data;
@@ -16,5 +17,6 @@ public class CommandRequest {
     private String deliveryDate;
 
     @NotNull
+    @Valid
     private List<CommandProductRequest> commandProductList;
 }
@@ -1,7 +1,7 @@
 package com.frcalderon.commands.controller.dto;
 
 import com.frcalderon.commands.model.Command;
-import com.frcalderon.commands.model.CommandProduct;
+import com.frcalderon.commands.model.CommandStatus;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -21,16 +21,16 @@ public class CommandResponse {
         this.deliveryDate = command.getDeliveryDate();
         this.status = command.getStatus();
         this.price = command.getPrice();
-        this.products = command.getProducts();
+        this.products = command.getProducts() == null ? null : command.getProducts().stream().map(CommandProductResponse::new).toList();
     }
 
     private Long id;
 
     private LocalDate deliveryDate;
 
-    private String status;
+    private CommandStatus status;
 
     private Double price;
 
-    private List<CommandProduct> products;
+    private List<CommandProductResponse> products;
 }
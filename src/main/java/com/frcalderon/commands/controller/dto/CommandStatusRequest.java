@@ -0,0 +1,23 @@
+package com.frcalderon.commands.controller.dto;
+
+import jakarta.validation.constraints.NotNull;
+import com.frcalderon.commands.model.CommandStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CommandStatusRequest {
+
+    @NotNull
+    private List<Long> ids;
+
+    @NotNull
+    private CommandStatus status;
+}
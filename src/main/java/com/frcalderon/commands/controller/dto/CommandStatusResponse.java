@@ -0,0 +1,22 @@
+package com.frcalderon.commands.controller.dto;
+
+import com.frcalderon.commands.model.CommandStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CommandStatusResponse {
+
+    private CommandStatus status;
+
+    private List<Long> moved;
+
+    private List<Long> rejected;
+}
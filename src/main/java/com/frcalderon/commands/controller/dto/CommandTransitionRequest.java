@@ -0,0 +1,18 @@
+package com.frcalderon.commands.controller.dto;
+
+import com.frcalderon.commands.model.CommandStatus;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CommandTransitionRequest {
+
+    @NotNull
+    private CommandStatus status;
+}
@@ -0,0 +1,15 @@
+package com.frcalderon.commands.controller.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RequeueResponse {
+
+    private int requeued;
+}
@@ -0,0 +1,37 @@
+package com.frcalderon.commands.controller.dto;
+
+import com.frcalderon.commands.model.UpdateStock;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UpdateStockResponse {
+
+    public UpdateStockResponse(UpdateStock updateStock) {
+        this.id = updateStock.getId();
+        this.uri = updateStock.getUri();
+        this.request = updateStock.getRequest();
+        this.attempts = updateStock.getAttempts();
+        this.lastError = updateStock.getLastError();
+        this.createdAt = updateStock.getCreatedAt();
+    }
+
+    private Long id;
+
+    private String uri;
+
+    private String request;
+
+    private int attempts;
+
+    private String lastError;
+
+    private Instant createdAt;
+}
@@ -0,0 +1,8 @@
+package com.frcalderon.commands.exceptions;
+
+public class AcceptedCommandNotFoundException extends RuntimeException {
+
+    public AcceptedCommandNotFoundException() {
+        super("Accepted command not found");
+    }
+}
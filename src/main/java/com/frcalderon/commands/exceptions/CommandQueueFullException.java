@@ -0,0 +1,8 @@
+package com.frcalderon.commands.exceptions;
+
+public class CommandQueueFullException extends RuntimeException {
+
+    public CommandQueueFullException() {
+        super("Too many commands waiting to be written, retry later");
+    }
+}
@@ -1,5 +1,6 @@
 package com.frcalderon.commands.exceptions;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -36,4 +37,121 @@ public class CustomExceptionHandler {
 
         return new ResponseEntity<>(exception, httpStatus);
     }
+
+    @ExceptionHandler
+    public ResponseEntity<Object> handleUpdateStockNotFoundException(UpdateStockNotFoundException e) {
+        HttpStatus httpStatus = HttpStatus.NOT_FOUND;
+
+        CustomException exception = CustomException.builder()
+                .message(e.getMessage())
+                .httpStatus(httpStatus)
+                .timestamp(ZonedDateTime.now(ZoneId.of("Z")))
+                .build();
+
+        return new ResponseEntity<>(exception, httpStatus);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Object> handleInvalidCommandBatchException(InvalidCommandBatchException e) {
+        HttpStatus httpStatus = HttpStatus.BAD_REQUEST;
+
+        CustomException exception = CustomException.builder()
+                .message(e.getMessage())
+                .httpStatus(httpStatus)
+                .timestamp(ZonedDateTime.now(ZoneId.of("Z")))
+                .build();
+
+        return new ResponseEntity<>(exception, httpStatus);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Object> handleStatusTransitionNotSupportedException(StatusTransitionNotSupportedException e) {
+        HttpStatus httpStatus = HttpStatus.BAD_REQUEST;
+
+        CustomException exception = CustomException.builder()
+                .message(e.getMessage())
+                .httpStatus(httpStatus)
+                .timestamp(ZonedDateTime.now(ZoneId.of("Z")))
+                .build();
+
+        return new ResponseEntity<>(exception, httpStatus);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Object> handleIdempotencyKeyInProgressException(IdempotencyKeyInProgressException e) {
+        HttpStatus httpStatus = HttpStatus.CONFLICT;
+
+        CustomException exception = CustomException.builder()
+                .message(e.getMessage())
+                .httpStatus(httpStatus)
+                .timestamp(ZonedDateTime.now(ZoneId.of("Z")))
+                .build();
+
+        return new ResponseEntity<>(exception, httpStatus);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Object> handleIdempotencyKeyReusedException(IdempotencyKeyReusedException e) {
+        HttpStatus httpStatus = HttpStatus.UNPROCESSABLE_ENTITY;
+
+        CustomException exception = CustomException.builder()
+                .message(e.getMessage())
+                .httpStatus(httpStatus)
+                .timestamp(ZonedDateTime.now(ZoneId.of("Z")))
+                .build();
+
+        return new ResponseEntity<>(exception, httpStatus);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Object> handleIdempotencyKeyLimitException(IdempotencyKeyLimitException e) {
+        HttpStatus httpStatus = HttpStatus.TOO_MANY_REQUESTS;
+
+        CustomException exception = CustomException.builder()
+                .message(e.getMessage())
+                .httpStatus(httpStatus)
+                .timestamp(ZonedDateTime.now(ZoneId.of("Z")))
+                .build();
+
+        return new ResponseEntity<>(exception, httpStatus);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Object> handleAcceptedCommandNotFoundException(AcceptedCommandNotFoundException e) {
+        HttpStatus httpStatus = HttpStatus.NOT_FOUND;
+
+        CustomException exception = CustomException.builder()
+                .message(e.getMessage())
+                .httpStatus(httpStatus)
+                .timestamp(ZonedDateTime.now(ZoneId.of("Z")))
+                .build();
+
+        return new ResponseEntity<>(exception, httpStatus);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Object> handleCommandQueueFullException(CommandQueueFullException e) {
+        HttpStatus httpStatus = HttpStatus.SERVICE_UNAVAILABLE;
+
+        CustomException exception = CustomException.builder()
+                .message(e.getMessage())
+                .httpStatus(httpStatus)
+                .timestamp(ZonedDateTime.now(ZoneId.of("Z")))
+                .build();
+
+        return ResponseEntity.status(httpStatus).header(HttpHeaders.RETRY_AFTER, "1").body(exception);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Object> handleInvalidCommandPageException(InvalidCommandPageException e) {
+        HttpStatus httpStatus = HttpStatus.BAD_REQUEST;
+
+        CustomException exception = CustomException.builder()
+                .message(e.getMessage())
+                .httpStatus(httpStatus)
+                .timestamp(ZonedDateTime.now(ZoneId.of("Z")))
+                .build();
+
+        return new ResponseEntity<>(exception, httpStatus);
+    }
 }
@@ -0,0 +1,8 @@
+package com.frcalderon.commands.exceptions;
+
+public class IdempotencyKeyInProgressException extends RuntimeException {
+
+    public IdempotencyKeyInProgressException() {
+        super("A request with this Idempotency-Key is still being processed");
+    }
+}
@@ -0,0 +1,8 @@
+package com.frcalderon.commands.exceptions;
+
+public class IdempotencyKeyLimitException extends RuntimeException {
+
+    public IdempotencyKeyLimitException() {
+        super("Too many Idempotency-Keys in use, retry once older ones expire");
+    }
+}
@@ -0,0 +1,8 @@
+package com.frcalderon.commands.exceptions;
+
+public class InvalidCommandBatchException extends RuntimeException {
+
+    public InvalidCommandBatchException() {
+        super("Command batch must be a JSON array of commands");
+    }
+}
@@ -0,0 +1,8 @@
+package com.frcalderon.commands.exceptions;
+
+public class InvalidCommandPageException extends RuntimeException {
+
+    public InvalidCommandPageException() {
+        super("Invalid sort or cursor for the command listing");
+    }
+}
@@ -0,0 +1,8 @@
+package com.frcalderon.commands.exceptions;
+
+public class StatusTransitionNotSupportedException extends RuntimeException {
+
+    public StatusTransitionNotSupportedException() {
+        super("Status transition not supported");
+    }
+}
@@ -0,0 +1,8 @@
+package com.frcalderon.commands.exceptions;
+
+public class UpdateStockNotFoundException extends RuntimeException {
+
+    public UpdateStockNotFoundException() {
+        super("Dead stock update not found");
+    }
+}
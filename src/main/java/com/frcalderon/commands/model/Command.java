@@ -6,26 +6,25 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 
 import java.time.LocalDate;
 import java.util.List;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "command_delivery_date_id_idx", columnList = "deliveryDate, id"),
+        @Index(name = "command_status_delivery_date_idx", columnList = "status, deliveryDate, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Command {
 
-    public static final String TO_DO = "TO DO";
-    public static final String IN_PROGRESS = "IN PROGRESS";
-    public static final String PREPARED = "PREPARED";
-    public static final String DELIVERED = "DELIVERED";
-    public static final String CANCELLED = "CANCELLED";
-
-
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "command_seq")
+    @SequenceGenerator(name = "command_seq", sequenceName = "command_seq", allocationSize = 50)
     private Long id;
 
     @Column
@@ -34,12 +33,13 @@ public class Command {
 
     @Column
     @NotNull
-    private String status;
+    private CommandStatus status;
 
     @Column
     @NotNull
     private Double price;
 
     @OneToMany(mappedBy = "command")
+    @BatchSize(size = 50)
     private List<CommandProduct> products;
 }
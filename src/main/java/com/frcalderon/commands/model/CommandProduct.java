@@ -9,6 +9,10 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "command_product_command_id_idx", columnList = "command_id"),
+        @Index(name = "command_product_product_id_idx", columnList = "productId, command_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -16,7 +20,8 @@ import lombok.NoArgsConstructor;
 public class CommandProduct {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "command_product_seq")
+    @SequenceGenerator(name = "command_product_seq", sequenceName = "command_product_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -0,0 +1,29 @@
+package com.frcalderon.commands.model;
+
+import com.frcalderon.commands.exceptions.InvalidCommandPageException;
+
+// both sorts end with the id, so the order is total and a page can resume after the last command
+public enum CommandSort {
+
+    ID("id"),
+    DELIVERY_DATE("deliveryDate");
+
+    private final String param;
+
+    CommandSort(String param) {
+        this.param = param;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    public static CommandSort fromParam(String param) {
+        for (CommandSort sort : values()) {
+            if (sort.param.equals(param)) {
+                return sort;
+            }
+        }
+        throw new InvalidCommandPageException();
+    }
+}
@@ -0,0 +1,51 @@
+package com.frcalderon.commands.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+// stored as its code and exposed as its label; never reuse a code
+public enum CommandStatus {
+
+    TO_DO(0, "TO DO"),
+    IN_PROGRESS(1, "IN PROGRESS"),
+    PREPARED(2, "PREPARED"),
+    DELIVERED(3, "DELIVERED"),
+    CANCELLED(4, "CANCELLED");
+
+    private final short code;
+
+    private final String label;
+
+    CommandStatus(int code, String label) {
+        this.code = (short) code;
+        this.label = label;
+    }
+
+    public short getCode() {
+        return code;
+    }
+
+    @JsonValue
+    public String getLabel() {
+        return label;
+    }
+
+    public static CommandStatus fromCode(short code) {
+        for (CommandStatus status : values()) {
+            if (status.code == code) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown command status code " + code);
+    }
+
+    @JsonCreator
+    public static CommandStatus fromLabel(String label) {
+        for (CommandStatus status : values()) {
+            if (status.label.equalsIgnoreCase(label) || status.name().equalsIgnoreCase(label)) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown command status " + label);
+    }
+}
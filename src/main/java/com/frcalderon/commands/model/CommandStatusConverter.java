@@ -0,0 +1,18 @@
+package com.frcalderon.commands.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+@Converter(autoApply = true)
+public class CommandStatusConverter implements AttributeConverter<CommandStatus, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(CommandStatus status) {
+        return status == null ? null : status.getCode();
+    }
+
+    @Override
+    public CommandStatus convertToEntityAttribute(Short code) {
+        return code == null ? null : CommandStatus.fromCode(code);
+    }
+}
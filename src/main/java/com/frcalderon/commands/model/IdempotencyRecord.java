@@ -0,0 +1,57 @@
+package com.frcalderon.commands.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// response is null while the first request runs, and until then the row only lives for the short lease
+@Entity
+@Table(uniqueConstraints = {
+        @UniqueConstraint(name = "idempotency_record_subject_key_uk", columnNames = {"subject", "idempotencyKey"})
+}, indexes = {
+        @Index(name = "idempotency_record_expires_at_idx", columnList = "expiresAt"),
+        @Index(name = "idempotency_record_subject_expires_at_idx", columnList = "subject, expiresAt")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "idempotency_record_seq")
+    @SequenceGenerator(name = "idempotency_record_seq", sequenceName = "idempotency_record_seq", allocationSize = 50)
+    private Long id;
+
+    @Column
+    @NotNull
+    private String subject;
+
+    @Column
+    @NotNull
+    private String idempotencyKey;
+
+    @Column(length = 64)
+    @NotNull
+    private String fingerprint;
+
+    @Column(length = 65535)
+    private String response;
+
+    @Column
+    @NotNull
+    private Instant expiresAt;
+}
@@ -3,12 +3,18 @@ package com.frcalderon.commands.model;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.Instant;
 
 @Entity
 @Data
@@ -18,10 +24,11 @@ import lombok.NoArgsConstructor;
 public class UpdateStock {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "update_stock_seq")
+    @SequenceGenerator(name = "update_stock_seq", sequenceName = "update_stock_seq", allocationSize = 50)
     private Long id;
 
-    @Column
+    @Column(length = 65535)
     @NotNull
     private String request;
 
@@ -32,4 +39,39 @@ public class UpdateStock {
     @Column
     @NotNull
     private boolean sent;
+
+    @Column
+    private Instant createdAt;
+
+    @Column
+    private Instant sentAt;
+
+    @Column
+    @NotNull
+    @ColumnDefault("0")
+    private int attempts;
+
+    @Column
+    private Instant nextAttemptAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @Column
+    @NotNull
+    @ColumnDefault("false")
+    private boolean dead;
+
+    @Column
+    private String claimOwner;
+
+    @Column
+    private Instant claimedUntil;
+
+    @PrePersist
+    void onCreate() {
+        if (createdAt == null) {
+            createdAt = Instant.now();
+        }
+    }
 }
@@ -0,0 +1,42 @@
+package com.frcalderon.commands.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UpdateStockArchive {
+
+    @Id
+    private Long id;
+
+    @Column(length = 65535)
+    @NotNull
+    private String request;
+
+    @Column
+    @NotNull
+    private String uri;
+
+    @Column
+    @NotNull
+    private int attempts;
+
+    @Column
+    private Instant sentAt;
+
+    @Column
+    @NotNull
+    private Instant archivedAt;
+}
@@ -0,0 +1,26 @@
+package com.frcalderon.commands.model;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UpdateStockBatchEntry {
+
+    private Integer id;
+
+    private String uri;
+
+    @JsonRawValue
+    private String request;
+
+    public void setRequest(JsonNode request) {
+        this.request = request.toString();
+    }
+}
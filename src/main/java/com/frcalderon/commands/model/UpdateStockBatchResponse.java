@@ -0,0 +1,17 @@
+package com.frcalderon.commands.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UpdateStockBatchResponse {
+
+    private List<UpdateStockBatchResult> results;
+}
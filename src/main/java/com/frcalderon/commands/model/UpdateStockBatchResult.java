@@ -0,0 +1,19 @@
+package com.frcalderon.commands.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UpdateStockBatchResult {
+
+    private Integer id;
+
+    private boolean success;
+
+    private String error;
+}
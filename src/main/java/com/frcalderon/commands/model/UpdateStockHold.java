@@ -0,0 +1,60 @@
+package com.frcalderon.commands.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+// the lowest unsent row of a product that failed or died; heldUntil is its next attempt, null once dead
+@Entity
+@Table(indexes = {
+        @Index(name = "update_stock_hold_update_stock_id_idx", columnList = "updateStockId")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UpdateStockHold implements Persistable<Long> {
+
+    @Id
+    private Long productId;
+
+    @Column
+    @NotNull
+    private Long updateStockId;
+
+    @Column
+    private Instant heldUntil;
+
+    @Transient
+    @Builder.Default
+    private boolean fresh = true;
+
+    @Override
+    public Long getId() {
+        return productId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return fresh;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        fresh = false;
+    }
+}
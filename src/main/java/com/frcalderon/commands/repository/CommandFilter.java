@@ -0,0 +1,14 @@
+package com.frcalderon.commands.repository;
+
+import com.frcalderon.commands.model.CommandStatus;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+// null or empty values do not filter; delivery bounds are inclusive
+public record CommandFilter(Collection<CommandStatus> statuses, LocalDate deliveryFrom, LocalDate deliveryTo, Long productId) {
+
+    public static CommandFilter none() {
+        return new CommandFilter(null, null, null, null);
+    }
+}
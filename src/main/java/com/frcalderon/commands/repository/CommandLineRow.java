@@ -0,0 +1,11 @@
+package com.frcalderon.commands.repository;
+
+import com.frcalderon.commands.model.CommandStatus;
+
+import java.time.LocalDate;
+
+// a command without lines is a single row with the line columns null
+public record CommandLineRow(Long commandId, LocalDate deliveryDate, CommandStatus status, Double price,
+                             Long lineId, Long productId, String productName, Integer quantity, Double unitPrice,
+                             Double totalPrice) {
+}
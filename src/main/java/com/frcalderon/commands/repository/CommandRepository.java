@@ -1,9 +1,33 @@
 package com.frcalderon.commands.repository;
 
 import com.frcalderon.commands.model.Command;
+import com.frcalderon.commands.model.CommandStatus;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
 
 @Repository
-public interface CommandRepository extends JpaRepository<Command, Long> {
+public interface CommandRepository extends JpaRepository<Command, Long>, CommandRepositoryCustom {
+
+    @Transactional(readOnly = true)
+    @Query("select new com.frcalderon.commands.repository.CommandLineRow(c.id, c.deliveryDate, c.status, c.price, " +
+            "p.id, p.productId, p.productName, p.quantity, p.unitPrice, p.totalPrice) " +
+            "from Command c left join c.products p where c.id in :ids order by c.id, p.id")
+    List<CommandLineRow> findLinesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c.id from Command c where c.id in :ids and c.status in :statuses")
+    List<Long> lockIdsInStatus(@Param("ids") Collection<Long> ids, @Param("statuses") Collection<CommandStatus> statuses);
+
+    @Modifying(clearAutomatically = true)
+    @Query("update Command c set c.status = :status where c.id in :ids")
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("status") CommandStatus status);
 }
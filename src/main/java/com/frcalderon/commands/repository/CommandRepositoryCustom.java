@@ -0,0 +1,21 @@
+package com.frcalderon.commands.repository;
+
+import com.frcalderon.commands.model.CommandSort;
+import com.frcalderon.commands.model.CommandStatus;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface CommandRepositoryCustom {
+
+    // ids only, since a fetch join cannot be limited in the database
+    List<Long> findPageIds(CommandFilter filter, CommandSort sort, LocalDate afterDeliveryDate, Long afterId, int limit);
+
+    // no rows when the command was not in one of fromStatuses
+    List<CommandLineRow> transition(Long id, Collection<CommandStatus> fromStatuses, CommandStatus status);
+
+    // must be consumed inside a transaction
+    Stream<CommandLineRow> streamLines(int fetchSize);
+}
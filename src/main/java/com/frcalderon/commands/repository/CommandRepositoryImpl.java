@@ -0,0 +1,144 @@
+package com.frcalderon.commands.repository;
+
+import com.frcalderon.commands.model.Command;
+import com.frcalderon.commands.model.CommandProduct;
+import com.frcalderon.commands.model.CommandSort;
+import com.frcalderon.commands.model.CommandStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.query.NativeQuery;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+class CommandRepositoryImpl implements CommandRepositoryCustom {
+
+    private static final String LINE_COLUMNS = "c.id as command_id, c.delivery_date, c.status, c.price, p.id as line_id, " +
+            "p.product_id, p.product_name, p.quantity, p.unit_price, p.total_price";
+
+    private static final String TRANSITION_UPDATE = "update command set status = :status " +
+            "where id = :id and status in (:fromStatuses)";
+
+    // a data-modifying CTE, whose RETURNING rows are joined to the lines in the same statement
+    private static final String POSTGRESQL_TRANSITION = "with c as (" + TRANSITION_UPDATE +
+            " returning id, delivery_date, status, price) select " + LINE_COLUMNS +
+            " from c left join command_product p on p.command_id = c.id order by p.id";
+
+    // H2 reads the updated rows back through a data change delta table instead of RETURNING
+    private static final String H2_TRANSITION = "select " + LINE_COLUMNS + " from final table (" + TRANSITION_UPDATE +
+            ") c left join command_product p on p.command_id = c.id order by p.id";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Long> findPageIds(CommandFilter filter, CommandSort sort, LocalDate afterDeliveryDate, Long afterId, int limit) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Command> command = query.from(Command.class);
+        Path<Long> id = command.get("id");
+        Path<LocalDate> deliveryDate = command.get("deliveryDate");
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.statuses() != null && !filter.statuses().isEmpty()) {
+            predicates.add(command.get("status").in(filter.statuses()));
+        }
+        if (filter.deliveryFrom() != null) {
+            predicates.add(criteriaBuilder.greaterThanOrEqualTo(deliveryDate, filter.deliveryFrom()));
+        }
+        if (filter.deliveryTo() != null) {
+            predicates.add(criteriaBuilder.lessThanOrEqualTo(deliveryDate, filter.deliveryTo()));
+        }
+        if (filter.productId() != null) {
+            Subquery<Long> products = query.subquery(Long.class);
+            Root<CommandProduct> product = products.from(CommandProduct.class);
+            products.select(product.get("id"))
+                    .where(criteriaBuilder.equal(product.get("command"), command),
+                            criteriaBuilder.equal(product.get("productId"), filter.productId()));
+            predicates.add(criteriaBuilder.exists(products));
+        }
+
+        boolean byDeliveryDate = sort == CommandSort.DELIVERY_DATE;
+        if (afterId != null) {
+            predicates.add(byDeliveryDate
+                    ? criteriaBuilder.or(
+                            criteriaBuilder.greaterThan(deliveryDate, afterDeliveryDate),
+                            criteriaBuilder.and(criteriaBuilder.equal(deliveryDate, afterDeliveryDate), criteriaBuilder.greaterThan(id, afterId)))
+                    : criteriaBuilder.greaterThan(id, afterId));
+        }
+
+        query.select(id)
+                .where(predicates.toArray(Predicate[]::new))
+                .orderBy(byDeliveryDate
+                        ? List.of(criteriaBuilder.asc(deliveryDate), criteriaBuilder.asc(id))
+                        : List.of(criteriaBuilder.asc(id)));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<CommandLineRow> transition(Long id, Collection<CommandStatus> fromStatuses, CommandStatus status) {
+        Dialect dialect = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect();
+        String sql;
+        if (dialect instanceof PostgreSQLDialect) {
+            sql = POSTGRESQL_TRANSITION;
+        } else if (dialect instanceof H2Dialect) {
+            sql = H2_TRANSITION;
+        } else {
+            throw new IllegalStateException("Status transitions are not supported on " + dialect);
+        }
+
+        @SuppressWarnings("unchecked")
+        NativeQuery<Object[]> query = entityManager.createNativeQuery(sql).unwrap(NativeQuery.class);
+        List<Object[]> rows = query.addSynchronizedEntityClass(Command.class)
+                .addScalar("command_id", Long.class)
+                .addScalar("delivery_date", LocalDate.class)
+                .addScalar("status", Short.class)
+                .addScalar("price", Double.class)
+                .addScalar("line_id", Long.class)
+                .addScalar("product_id", Long.class)
+                .addScalar("product_name", String.class)
+                .addScalar("quantity", Integer.class)
+                .addScalar("unit_price", Double.class)
+                .addScalar("total_price", Double.class)
+                .setParameter("status", status.getCode())
+                .setParameter("id", id)
+                .setParameterList("fromStatuses", fromStatuses.stream().map(CommandStatus::getCode).toList())
+                .getResultList();
+        // like a clearing @Modifying query, so a command loaded before does not keep its old status
+        entityManager.clear();
+
+        return rows.stream()
+                .map(row -> new CommandLineRow((Long) row[0], (LocalDate) row[1], CommandStatus.fromCode((Short) row[2]),
+                        (Double) row[3], (Long) row[4], (Long) row[5], (String) row[6], (Integer) row[7], (Double) row[8],
+                        (Double) row[9]))
+                .toList();
+    }
+
+    @Override
+    public Stream<CommandLineRow> streamLines(int fetchSize) {
+        return entityManager.createQuery("select new com.frcalderon.commands.repository.CommandLineRow(c.id, c.deliveryDate, " +
+                        "c.status, c.price, p.id, p.productId, p.productName, p.quantity, p.unitPrice, p.totalPrice) " +
+                        "from Command c left join c.products p order by c.id, p.id", CommandLineRow.class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+}
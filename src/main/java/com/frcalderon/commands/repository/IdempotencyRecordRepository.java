@@ -0,0 +1,31 @@
+package com.frcalderon.commands.repository;
+
+import com.frcalderon.commands.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+
+    Optional<IdempotencyRecord> findBySubjectAndIdempotencyKey(String subject, String idempotencyKey);
+
+    long countBySubjectAndExpiresAtGreaterThanEqual(String subject, Instant now);
+
+    @Modifying
+    @Query("update IdempotencyRecord r set r.response = :response, r.expiresAt = :expiresAt where r.id = :id")
+    int complete(@Param("id") Long id, @Param("response") String response, @Param("expiresAt") Instant expiresAt);
+
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.id = :id and r.expiresAt < :now")
+    int deleteIfExpired(@Param("id") Long id, @Param("now") Instant now);
+
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") Instant now);
+}
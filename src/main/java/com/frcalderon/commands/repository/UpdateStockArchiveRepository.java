@@ -0,0 +1,21 @@
+package com.frcalderon.commands.repository;
+
+import com.frcalderon.commands.model.UpdateStockArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+
+@Repository
+public interface UpdateStockArchiveRepository extends JpaRepository<UpdateStockArchive, Long> {
+
+    @Modifying
+    @Query("insert into UpdateStockArchive (id, request, uri, attempts, sentAt, archivedAt) " +
+            "select u.id, u.request, u.uri, u.attempts, u.sentAt, :archivedAt from UpdateStock u " +
+            "where u.id in :ids and u.sent = true")
+    int archiveSent(@Param("ids") Collection<Long> ids, @Param("archivedAt") Instant archivedAt);
+}
@@ -0,0 +1,35 @@
+package com.frcalderon.commands.repository;
+
+import com.frcalderon.commands.model.UpdateStockHold;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface UpdateStockHoldRepository extends JpaRepository<UpdateStockHold, Long> {
+
+    @Query("select h from UpdateStockHold h where h.heldUntil is null or h.heldUntil > :now order by h.updateStockId")
+    List<UpdateStockHold> findHolding(@Param("now") Instant now, Pageable pageable);
+
+    @Modifying
+    @Query("delete from UpdateStockHold h where h.updateStockId in :ids")
+    int release(@Param("ids") Collection<Long> updateStockIds);
+
+    @Transactional
+    @Modifying
+    @Query("delete from UpdateStockHold h where h.heldUntil is null")
+    int releaseDead();
+
+    @Transactional
+    @Modifying
+    @Query("delete from UpdateStockHold h where h.heldUntil is null and h.updateStockId = :id")
+    int releaseDead(@Param("id") Long updateStockId);
+}
@@ -1,13 +1,99 @@
 package com.frcalderon.commands.repository;
 
 import com.frcalderon.commands.model.UpdateStock;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface UpdateStockRepository extends JpaRepository<UpdateStock, Long> {
 
     List<UpdateStock> findAllBySent(boolean sent);
+
+    List<UpdateStock> findTop100ByDeadTrueOrderByIdAsc();
+
+    long countBySentFalseAndDeadFalse();
+
+    // the gauges below are answered by the partial indexes of UpdateStockIndexInitializer
+    long countByDeadTrue();
+
+    @Query("select min(u.createdAt) from UpdateStock u where u.sent = false and u.dead = false")
+    Instant findOldestUnsentCreatedAt();
+
+    @Query("select max(u.id) from UpdateStock u")
+    Long findMaxId();
+
+    // skips locked rows, so concurrent replicas claim disjoint slices
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select u from UpdateStock u where u.sent = false and u.dead = false and u.id between :fromId and :toId " +
+            "and (u.nextAttemptAt is null or u.nextAttemptAt <= :now) " +
+            "and (u.claimedUntil is null or u.claimedUntil < :now) order by u.id")
+    List<UpdateStock> findClaimable(@Param("fromId") Long fromId, @Param("toId") Long toId,
+                                    @Param("now") Instant now, Pageable pageable);
+
+    // bounded by the pages other replicas have in flight, and covered by update_stock_unsent_idx
+    @Query("select u from UpdateStock u where u.sent = false and u.dead = false " +
+            "and u.claimedUntil >= :now and u.claimOwner <> :owner order by u.id")
+    List<UpdateStock> findLeasedByOthers(@Param("now") Instant now, @Param("owner") String owner, Pageable pageable);
+
+    @Modifying
+    @Query("update UpdateStock u set u.claimOwner = :owner, u.claimedUntil = :claimedUntil where u.id in :ids")
+    int claim(@Param("ids") Collection<Long> ids, @Param("owner") String owner, @Param("claimedUntil") Instant claimedUntil);
+
+    @Modifying
+    @Query("update UpdateStock u set u.claimOwner = null, u.claimedUntil = null " +
+            "where u.id in :ids and u.claimOwner = :owner and u.sent = false")
+    int release(@Param("ids") Collection<Long> ids, @Param("owner") String owner);
+
+    @Transactional
+    @Modifying
+    @Query("update UpdateStock u set u.sent = true, u.sentAt = :sentAt, u.claimOwner = null, u.claimedUntil = null " +
+            "where u.id in :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("sentAt") Instant sentAt);
+
+    @Modifying
+    @Query("update UpdateStock u set u.attempts = :attempts, u.nextAttemptAt = :nextAttemptAt, u.lastError = :lastError, " +
+            "u.dead = :dead, u.claimOwner = null, u.claimedUntil = null where u.id = :id")
+    int recordFailure(@Param("id") Long id, @Param("attempts") int attempts, @Param("nextAttemptAt") Instant nextAttemptAt,
+                      @Param("lastError") String lastError, @Param("dead") boolean dead);
+
+    // keeps the id, and so the place of the row in the per-product order
+    @Modifying
+    @Query("update UpdateStock u set u.request = :request, u.uri = :uri, u.attempts = :attempts, " +
+            "u.nextAttemptAt = :nextAttemptAt, u.lastError = :lastError, u.dead = :dead, u.claimOwner = null, " +
+            "u.claimedUntil = null where u.id = :id")
+    int reschedule(@Param("id") Long id, @Param("request") String request, @Param("uri") String uri,
+                   @Param("attempts") int attempts, @Param("nextAttemptAt") Instant nextAttemptAt,
+                   @Param("lastError") String lastError, @Param("dead") boolean dead);
+
+    // rows sent before sentAt was recorded have none and are always eligible
+    @Query("select u.id from UpdateStock u where u.sent = true and (u.sentAt is null or u.sentAt < :cutoff) order by u.id")
+    List<Long> findSentBefore(@Param("cutoff") Instant cutoff, Pageable pageable);
+
+    @Modifying
+    @Query("delete from UpdateStock u where u.id in :ids and u.sent = true")
+    int deleteSent(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query("update UpdateStock u set u.dead = false, u.attempts = 0, u.nextAttemptAt = null where u.dead = true")
+    int requeueDead();
+
+    @Transactional
+    @Modifying
+    @Query("update UpdateStock u set u.dead = false, u.attempts = 0, u.nextAttemptAt = null where u.dead = true and u.id = :id")
+    int requeueDead(@Param("id") Long id);
 }
@@ -1,5 +1,7 @@
 package com.frcalderon.commands.schedule;
 
+import com.frcalderon.commands.service.IdempotencyStore;
+import com.frcalderon.commands.service.UpdateStockRetentionService;
 import com.frcalderon.commands.service.UpdateStockService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -11,8 +13,24 @@ public class Scheduler {
     @Autowired
     private UpdateStockService updateStockService;
 
-    @Scheduled(cron = "0 0 1 ? * *")
+    @Autowired
+    private UpdateStockRetentionService updateStockRetentionService;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Scheduled(cron = "${ms-commands.update-stock.sweep-cron:0 * * * * *}")
     public void updateStockInProductsService() {
         updateStockService.sendRequestToUpdateStock();
     }
+
+    @Scheduled(cron = "${ms-commands.update-stock.retention.cron:0 30 3 * * *}")
+    public void purgeSentUpdateStocks() {
+        updateStockRetentionService.purgeSentUpdateStocks();
+    }
+
+    @Scheduled(cron = "${ms-commands.idempotency.purge-cron:0 15 * * * *}")
+    public void purgeExpiredIdempotencyKeys() {
+        idempotencyStore.purgeExpired();
+    }
 }
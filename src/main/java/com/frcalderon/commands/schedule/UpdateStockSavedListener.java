@@ -0,0 +1,20 @@
+package com.frcalderon.commands.schedule;
+
+import com.frcalderon.commands.service.UpdateStockSavedEvent;
+import com.frcalderon.commands.service.UpdateStockService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+public class UpdateStockSavedListener {
+
+    @Autowired
+    private UpdateStockService updateStockService;
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUpdateStockSaved(UpdateStockSavedEvent event) {
+        updateStockService.requestDrain();
+    }
+}
@@ -0,0 +1,22 @@
+package com.frcalderon.commands.service;
+
+import java.util.UUID;
+
+public record AcceptedCommand(UUID trackingId, State state, Long commandId, String error) {
+
+    public enum State {
+        QUEUED, CREATED, FAILED
+    }
+
+    public static AcceptedCommand queued(UUID trackingId) {
+        return new AcceptedCommand(trackingId, State.QUEUED, null, null);
+    }
+
+    public static AcceptedCommand created(UUID trackingId, Long commandId) {
+        return new AcceptedCommand(trackingId, State.CREATED, commandId, null);
+    }
+
+    public static AcceptedCommand failed(UUID trackingId, String error) {
+        return new AcceptedCommand(trackingId, State.FAILED, null, error);
+    }
+}
@@ -0,0 +1,12 @@
+package com.frcalderon.commands.service;
+
+public record CommandBatchResult(int index, boolean created, Long id, String error) {
+
+    public static CommandBatchResult created(int index, Long id) {
+        return new CommandBatchResult(index, true, id, null);
+    }
+
+    public static CommandBatchResult rejected(int index, String error) {
+        return new CommandBatchResult(index, false, null, error);
+    }
+}
@@ -0,0 +1,179 @@
+package com.frcalderon.commands.service;
+
+import com.frcalderon.commands.controller.dto.CommandResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// a load overlapping an invalidation is returned but not kept, so a stale read is never cached
+@Component
+public class CommandCache implements MeterBinder {
+
+    private static final String CACHE_NAME = "commands";
+
+    @Value("${ms-commands.commands.cache.enabled:true}")
+    private boolean ENABLED;
+
+    @Value("${ms-commands.commands.cache.max-entries:10000}")
+    private int MAX_ENTRIES;
+
+    @Value("${ms-commands.commands.cache.ttl:30s}")
+    private Duration TTL;
+
+    @Autowired
+    private CommandInvalidationBus commandInvalidationBus;
+
+    private final Clock clock;
+
+    // insertion ordered, so the eldest entries are also the first to expire
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>();
+
+    private long invalidations;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder puts = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    public CommandCache() {
+        this(Clock.systemUTC());
+    }
+
+    CommandCache(Clock clock) {
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    void init() {
+        commandInvalidationBus.subscribe(this::evict, this::clear);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hits, LongAdder::doubleValue)
+                .tag("cache", CACHE_NAME)
+                .tag("result", "hit")
+                .description("The number of times cache lookup methods have returned a cached value")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::doubleValue)
+                .tag("cache", CACHE_NAME)
+                .tag("result", "miss")
+                .description("The number of times cache lookup methods have returned an uncached value")
+                .register(registry);
+        FunctionCounter.builder("cache.puts", puts, LongAdder::doubleValue)
+                .tag("cache", CACHE_NAME)
+                .description("The number of entries added to the cache")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::doubleValue)
+                .tag("cache", CACHE_NAME)
+                .description("The number of entries evicted from the cache for size, age or a write")
+                .register(registry);
+        Gauge.builder("cache.size", this, CommandCache::size)
+                .tag("cache", CACHE_NAME)
+                .description("The number of entries in the cache")
+                .register(registry);
+    }
+
+    public CommandResponse get(Long id, Supplier<CommandResponse> loader) {
+        if (!ENABLED) {
+            return loader.get();
+        }
+
+        long invalidationsBeforeLoad;
+        synchronized (entries) {
+            evictExpired();
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                hits.increment();
+                return entry.command();
+            }
+            invalidationsBeforeLoad = invalidations;
+        }
+        misses.increment();
+
+        CommandResponse command = loader.get();
+
+        synchronized (entries) {
+            if (invalidations == invalidationsBeforeLoad) {
+                entries.remove(id);
+                entries.put(id, new Entry(command, clock.instant().plus(TTL)));
+                puts.increment();
+                if (entries.size() > MAX_ENTRIES) {
+                    Iterator<Entry> eldest = entries.values().iterator();
+                    eldest.next();
+                    eldest.remove();
+                    evictions.increment();
+                }
+            }
+        }
+        return command;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void publishCommandsChanged(CommandsChangedEvent event) {
+        commandInvalidationBus.publish(event.commandIds());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCommandsChanged(CommandsChangedEvent event) {
+        evict(event.commandIds());
+    }
+
+    public void evict(Collection<Long> commandIds) {
+        synchronized (entries) {
+            invalidations++;
+            for (Long id : commandIds) {
+                if (entries.remove(id) != null) {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            invalidations++;
+            evictions.add(entries.size());
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            evictExpired();
+            return entries.size();
+        }
+    }
+
+    private void evictExpired() {
+        Instant now = clock.instant();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext() && iterator.next().expiresAt().isBefore(now)) {
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private record Entry(CommandResponse command, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,45 @@
+package com.frcalderon.commands.service;
+
+import com.frcalderon.commands.controller.dto.CommandResponse;
+import com.frcalderon.commands.exceptions.InvalidCommandPageException;
+import com.frcalderon.commands.model.CommandSort;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+// carries its sort, so it cannot be replayed against another order
+public record CommandCursor(CommandSort sort, LocalDate deliveryDate, Long id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static CommandCursor after(CommandSort sort, CommandResponse command) {
+        return new CommandCursor(sort, sort == CommandSort.DELIVERY_DATE ? command.getDeliveryDate() : null, command.getId());
+    }
+
+    public String encode() {
+        String value = sort.name() + SEPARATOR + (deliveryDate == null ? "" : deliveryDate) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static CommandCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|", -1);
+            if (parts.length != 3) {
+                throw new InvalidCommandPageException();
+            }
+
+            CommandSort sort = CommandSort.valueOf(parts[0]);
+            LocalDate deliveryDate = parts[1].isEmpty() ? null : LocalDate.parse(parts[1]);
+            if ((sort == CommandSort.DELIVERY_DATE) != (deliveryDate != null)) {
+                throw new InvalidCommandPageException();
+            }
+            return new CommandCursor(sort, deliveryDate, Long.valueOf(parts[2]));
+        } catch (RuntimeException e) {
+            if (e instanceof InvalidCommandPageException) {
+                throw e;
+            }
+            throw new InvalidCommandPageException();
+        }
+    }
+}
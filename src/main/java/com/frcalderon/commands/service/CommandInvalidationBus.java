@@ -0,0 +1,14 @@
+package com.frcalderon.commands.service;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+// broker-backed implementations also deliver to the subscribers of the publishing replica
+public interface CommandInvalidationBus {
+
+    // called inside the writing transaction; subscribers must only hear of it once it commits
+    void publish(Collection<Long> commandIds);
+
+    // reset runs whenever publications may have been missed, so everything cached must be dropped
+    void subscribe(Consumer<Collection<Long>> subscriber, Runnable reset);
+}
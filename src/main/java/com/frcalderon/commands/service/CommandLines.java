@@ -0,0 +1,48 @@
+package com.frcalderon.commands.service;
+
+import com.frcalderon.commands.controller.dto.CommandProductResponse;
+import com.frcalderon.commands.controller.dto.CommandResponse;
+import com.frcalderon.commands.repository.CommandLineRow;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// rows must come ordered by command id
+public final class CommandLines {
+
+    private CommandLines() {
+    }
+
+    public static List<CommandResponse> toResponses(List<CommandLineRow> rows) {
+        Map<Long, CommandResponse> responses = new LinkedHashMap<>();
+        for (CommandLineRow row : rows) {
+            addLine(responses.computeIfAbsent(row.commandId(), commandId -> newResponse(row)), row);
+        }
+        return new ArrayList<>(responses.values());
+    }
+
+    public static CommandResponse newResponse(CommandLineRow row) {
+        return CommandResponse.builder()
+                .id(row.commandId())
+                .deliveryDate(row.deliveryDate())
+                .status(row.status())
+                .price(row.price())
+                .products(new ArrayList<>())
+                .build();
+    }
+
+    public static void addLine(CommandResponse response, CommandLineRow row) {
+        if (row.lineId() != null) {
+            response.getProducts().add(CommandProductResponse.builder()
+                    .id(row.lineId())
+                    .productId(row.productId())
+                    .productName(row.productName())
+                    .quantity(row.quantity())
+                    .unitPrice(row.unitPrice())
+                    .totalPrice(row.totalPrice())
+                    .build());
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.frcalderon.commands.service;
+
+import com.frcalderon.commands.controller.dto.CommandResponse;
+
+import java.util.List;
+
+public record CommandPage(List<CommandResponse> commands, String nextCursor) {
+}
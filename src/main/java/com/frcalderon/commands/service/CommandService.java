@@ -1,28 +1,64 @@
 package com.frcalderon.commands.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.frcalderon.commands.controller.dto.CommandProductRequest;
 import com.frcalderon.commands.controller.dto.CommandRequest;
+import com.frcalderon.commands.controller.dto.CommandResponse;
 import com.frcalderon.commands.exceptions.CommandCouldNotBeUpdatedException;
 import com.frcalderon.commands.exceptions.CommandNotFoundException;
+import com.frcalderon.commands.exceptions.InvalidCommandBatchException;
+import com.frcalderon.commands.exceptions.InvalidCommandPageException;
+import com.frcalderon.commands.exceptions.StatusTransitionNotSupportedException;
 import com.frcalderon.commands.model.Command;
 import com.frcalderon.commands.model.CommandProduct;
+import com.frcalderon.commands.model.CommandSort;
+import com.frcalderon.commands.model.CommandStatus;
 import com.frcalderon.commands.model.UpdateStock;
 import com.frcalderon.commands.model.UpdateStockRequest;
+import com.frcalderon.commands.repository.CommandFilter;
+import com.frcalderon.commands.repository.CommandLineRow;
 import com.frcalderon.commands.repository.CommandProductRepository;
 import com.frcalderon.commands.repository.CommandRepository;
 import com.frcalderon.commands.repository.UpdateStockRepository;
 import com.frcalderon.commands.utils.Utils;
-import jakarta.transaction.Transactional;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDate;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class CommandService {
@@ -30,9 +66,27 @@ public class CommandService {
     @Value("${ms-commands.ms-products.add-stock-uri:stock/add}")
     private String ADD_STOCK_URI;
 
-    @Value("${ms-stock.ms-products.consume-stock-uri:stock/consume}")
+    @Value("${ms-commands.ms-products.consume-stock-uri:stock/consume}")
     private String CONSUME_STOCK_URI;
 
+    @Value("${ms-commands.commands.batch.chunk-size:500}")
+    private int BATCH_CHUNK_SIZE;
+
+    @Value("${ms-commands.commands.batch.max-items:10000}")
+    private int BATCH_MAX_ITEMS;
+
+    @Value("${ms-commands.commands.status.chunk-size:500}")
+    private int STATUS_CHUNK_SIZE;
+
+    @Value("${ms-commands.commands.page.default-size:50}")
+    private int PAGE_DEFAULT_SIZE;
+
+    @Value("${ms-commands.commands.page.max-size:500}")
+    private int PAGE_MAX_SIZE;
+
+    @Value("${ms-commands.commands.export.fetch-size:500}")
+    private int EXPORT_FETCH_SIZE;
+
     @Autowired
     private CommandRepository commandRepository;
 
@@ -45,41 +99,101 @@ public class CommandService {
     @Autowired
     private ObjectMapper objectMapper;
 
-    public List<Command> getAllCommands() {
-        return this.commandRepository.findAll();
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private CommandCache commandCache;
+
+    @Transactional(readOnly = true)
+    public CommandPage getCommands(CommandFilter filter, CommandSort sort, String cursor, Integer limit) {
+        int pageSize = limit == null ? PAGE_DEFAULT_SIZE : Math.max(1, Math.min(limit, PAGE_MAX_SIZE));
+
+        List<Long> ids;
+        if (cursor == null || cursor.isEmpty()) {
+            ids = commandRepository.findPageIds(filter, sort, null, null, pageSize + 1);
+        } else {
+            CommandCursor after = CommandCursor.decode(cursor);
+            if (after.sort() != sort) {
+                throw new InvalidCommandPageException();
+            }
+            ids = commandRepository.findPageIds(filter, sort, after.deliveryDate(), after.id(), pageSize + 1);
+        }
+
+        boolean hasNext = ids.size() > pageSize;
+        List<Long> pageIds = hasNext ? ids.subList(0, pageSize) : ids;
+        if (pageIds.isEmpty()) {
+            return new CommandPage(List.of(), null);
+        }
+
+        Map<Long, CommandResponse> commandsById = new HashMap<>();
+        CommandLines.toResponses(commandRepository.findLinesByIdIn(pageIds)).forEach(command -> commandsById.put(command.getId(), command));
+        List<CommandResponse> commands = pageIds.stream()
+                .map(commandsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+
+        String nextCursor = hasNext && !commands.isEmpty()
+                ? CommandCursor.after(sort, commands.get(commands.size() - 1)).encode()
+                : null;
+        return new CommandPage(commands, nextCursor);
     }
 
-    public Command getCommand(Long id) {
-        return commandRepository.findById(id)
-                .orElseThrow(CommandNotFoundException::new);
+    public CommandResponse getCommand(Long id) {
+        return commandCache.get(id, () -> {
+            List<CommandResponse> commands = CommandLines.toResponses(commandRepository.findLinesByIdIn(List.of(id)));
+            if (commands.isEmpty()) {
+                throw new CommandNotFoundException();
+            }
+            return commands.get(0);
+        });
     }
 
+    @Transactional(readOnly = true)
+    public void exportCommands(OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+             Stream<CommandLineRow> rows = commandRepository.streamLines(EXPORT_FETCH_SIZE)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            CommandResponse command = null;
+            int rowCount = 0;
+            for (Iterator<CommandLineRow> iterator = rows.iterator(); iterator.hasNext(); ) {
+                CommandLineRow row = iterator.next();
+                if (command == null || !command.getId().equals(row.commandId())) {
+                    writeExportLine(command, writer, generator);
+                    command = CommandLines.newResponse(row);
+                }
+                CommandLines.addLine(command, row);
+
+                if (++rowCount % EXPORT_FETCH_SIZE == 0) {
+                    generator.flush();
+                }
+            }
+            writeExportLine(command, writer, generator);
+        }
+    }
+
+    @Transactional
     public Command createCommand(CommandRequest commandRequest) throws JsonProcessingException {
-        Command command = Command.builder()
-                .deliveryDate(LocalDate.parse(commandRequest.getDeliveryDate(), Utils.localDateTimeFormatter()))
-                .status(Command.TO_DO)
-                .price(0.0)
-                .build();
+        Command command = newCommand(commandRequest);
+        List<CommandProduct> commandProducts = command.getProducts();
 
         Command savedCommand = commandRepository.save(command);
+        commandProductRepository.saveAll(commandProducts);
 
-        double commandPrice = 0.0;
         List<UpdateStockRequest> updateStockRequests = new ArrayList<>();
-        for (CommandProductRequest product : commandRequest.getCommandProductList()) {
-            double productTotalPrice = product.getQuantity() * product.getPrice();
-            commandProductRepository.save(
-                    CommandProduct.builder()
-                            .command(savedCommand)
-                            .productId(product.getProductId())
-                            .productName(product.getProductName())
-                            .quantity(product.getQuantity())
-                            .unitPrice(product.getPrice())
-                            .totalPrice(productTotalPrice)
-                            .build()
-            );
-
-            commandPrice = commandPrice + productTotalPrice;
-
+        for (CommandProduct product : commandProducts) {
             updateStockRequests.add(UpdateStockRequest.builder()
                     .productId(product.getProductId())
                     .stock(product.getQuantity())
@@ -87,17 +201,69 @@ public class CommandService {
             );
         }
 
-        savedCommand.setPrice(commandPrice);
-        commandRepository.save(savedCommand);
-
         UpdateStock updateStock = UpdateStock.builder()
                 .request(objectMapper.writeValueAsString(updateStockRequests))
                 .uri(CONSUME_STOCK_URI)
                 .sent(false)
                 .build();
-        updateStockRepository.save(updateStock);
+        saveUpdateStock(updateStock);
+
+        savedCommand.setProducts(commandProducts);
+        publishCommandsChanged(List.of(savedCommand.getId()));
+        return savedCommand;
+    }
+
+    List<CommandBatchResult> createAcceptedCommands(List<Command> commands) {
+        Map<Integer, Command> chunk = new LinkedHashMap<>();
+        for (int i = 0; i < commands.size(); i++) {
+            chunk.put(i, commands.get(i));
+        }
+
+        List<CommandBatchResult> results = new ArrayList<>();
+        persistChunk(chunk, results);
+        return results;
+    }
+
+    // reading stops at the first malformed item, after persisting the ones before it
+    public List<CommandBatchResult> createCommands(InputStream body) throws IOException {
+        List<CommandBatchResult> results = new ArrayList<>();
+        Map<Integer, Command> chunk = new LinkedHashMap<>();
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (firstToken(parser) != JsonToken.START_ARRAY) {
+                throw new InvalidCommandBatchException();
+            }
+
+            int index = 0;
+            try {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (index >= BATCH_MAX_ITEMS) {
+                        results.add(CommandBatchResult.rejected(index, "Batch is limited to " + BATCH_MAX_ITEMS + " commands"));
+                        break;
+                    }
+
+                    JsonNode item = objectMapper.readTree(parser);
+                    try {
+                        chunk.put(index, newCommand(readCommandRequest(item)));
+                    } catch (JsonProcessingException e) {
+                        results.add(CommandBatchResult.rejected(index, e.getOriginalMessage()));
+                    } catch (RuntimeException e) {
+                        results.add(CommandBatchResult.rejected(index, e.getMessage()));
+                    }
+                    index++;
+
+                    if (chunk.size() == BATCH_CHUNK_SIZE) {
+                        persistChunk(chunk, results);
+                    }
+                }
+            } catch (JsonProcessingException e) {
+                results.add(CommandBatchResult.rejected(index, "Malformed command: " + e.getOriginalMessage()));
+            }
+        }
+        persistChunk(chunk, results);
 
-        return commandRepository.findById(savedCommand.getId()).get();
+        results.sort(Comparator.comparingInt(CommandBatchResult::index));
+        return results;
     }
 
     @Transactional
@@ -105,61 +271,63 @@ public class CommandService {
         Command commandToUpdate = commandRepository.findById(id)
                 .orElseThrow(CommandNotFoundException::new);
 
-        List<UpdateStockRequest> updateStockRequestsToAdd = new ArrayList<>();
+        Map<Long, Integer> deltas = new TreeMap<>();
+        Map<Long, Deque<CommandProduct>> currentProducts = new HashMap<>();
         for (CommandProduct product : commandToUpdate.getProducts()) {
-            updateStockRequestsToAdd.add(UpdateStockRequest.builder()
-                    .productId(product.getProductId())
-                    .stock(product.getQuantity())
-                    .build()
-            );
+            currentProducts.computeIfAbsent(product.getProductId(), productId -> new ArrayDeque<>()).add(product);
+            deltas.merge(product.getProductId(), product.getQuantity(), Integer::sum);
         }
 
-        UpdateStock updateStockToAdd = UpdateStock.builder()
-                .request(objectMapper.writeValueAsString(updateStockRequestsToAdd))
-                .uri(ADD_STOCK_URI)
-                .sent(false)
-                .build();
-        updateStockRepository.save(updateStockToAdd);
-
-        commandProductRepository.deleteByCommandId(id);
-
         double commandPrice = 0.0;
-        List<UpdateStockRequest> updateStockRequestsToConsume = new ArrayList<>();
+        List<CommandProduct> productsToInsert = new ArrayList<>();
         for (CommandProductRequest product : commandRequest.getCommandProductList()) {
             double productTotalPrice = product.getQuantity() * product.getPrice();
-            commandProductRepository.save(
-                    CommandProduct.builder()
-                            .command(commandToUpdate)
-                            .productId(product.getProductId())
-                            .productName(product.getProductName())
-                            .quantity(product.getQuantity())
-                            .unitPrice(product.getPrice())
-                            .totalPrice(productTotalPrice)
-                            .build()
-            );
+
+            Deque<CommandProduct> matches = currentProducts.get(product.getProductId());
+            CommandProduct commandProduct = matches == null ? null : matches.poll();
+            if (commandProduct == null) {
+                productsToInsert.add(
+                        CommandProduct.builder()
+                                .command(commandToUpdate)
+                                .productId(product.getProductId())
+                                .productName(product.getProductName())
+                                .quantity(product.getQuantity())
+                                .unitPrice(product.getPrice())
+                                .totalPrice(productTotalPrice)
+                                .build()
+                );
+            } else {
+                commandProduct.setProductName(product.getProductName());
+                commandProduct.setQuantity(product.getQuantity());
+                commandProduct.setUnitPrice(product.getPrice());
+                commandProduct.setTotalPrice(productTotalPrice);
+            }
 
             commandPrice = commandPrice + productTotalPrice;
+            deltas.merge(product.getProductId(), -product.getQuantity(), Integer::sum);
+        }
 
-            updateStockRequestsToConsume.add(UpdateStockRequest.builder()
-                    .productId(product.getProductId())
-                    .stock(product.getQuantity())
-                    .build()
-            );
+        List<CommandProduct> productsToDelete = new ArrayList<>();
+        currentProducts.values().forEach(productsToDelete::addAll);
+
+        if (!productsToDelete.isEmpty()) {
+            commandProductRepository.deleteAll(productsToDelete);
+            commandToUpdate.getProducts().removeAll(productsToDelete);
+        }
+        if (!productsToInsert.isEmpty()) {
+            commandProductRepository.saveAll(productsToInsert);
+            commandToUpdate.getProducts().addAll(productsToInsert);
         }
 
         commandToUpdate.setDeliveryDate(LocalDate.parse(commandRequest.getDeliveryDate(), Utils.localDateTimeFormatter()));
         commandToUpdate.setPrice(commandPrice);
 
-        commandRepository.save(commandToUpdate);
+        Command savedCommand = commandRepository.save(commandToUpdate);
 
-        UpdateStock updateStockToConsume = UpdateStock.builder()
-                .request(objectMapper.writeValueAsString(updateStockRequestsToConsume))
-                .uri(CONSUME_STOCK_URI)
-                .sent(false)
-                .build();
-        updateStockRepository.save(updateStockToConsume);
+        saveStockDeltas(deltas);
+        publishCommandsChanged(List.of(id));
 
-        return commandRepository.findById(commandToUpdate.getId()).get();
+        return savedCommand;
     }
 
     @Transactional
@@ -167,117 +335,217 @@ public class CommandService {
         Command commandToDelete = commandRepository.findById(id)
                 .orElseThrow(CommandNotFoundException::new);
 
-        List<UpdateStockRequest> updateStockRequestsToAdd = new ArrayList<>();
-        for (CommandProduct product : commandToDelete.getProducts()) {
-            updateStockRequestsToAdd.add(UpdateStockRequest.builder()
-                    .productId(product.getProductId())
-                    .stock(product.getQuantity())
-                    .build()
-            );
-        }
-
-        UpdateStock updateStockToAdd = UpdateStock.builder()
-                .request(objectMapper.writeValueAsString(updateStockRequestsToAdd))
-                .uri(ADD_STOCK_URI)
-                .sent(false)
-                .build();
-        updateStockRepository.save(updateStockToAdd);
+        saveProductsStock(commandToDelete.getProducts().stream()
+                .map(product -> stockRequest(product.getProductId(), product.getQuantity()))
+                .toList(), ADD_STOCK_URI);
 
         commandProductRepository.deleteByCommandId(id);
 
         commandRepository.deleteById(id);
+        publishCommandsChanged(List.of(id));
     }
 
-    public Command commandCancelled(Long id) throws JsonProcessingException {
-        Command commandToUpdate = commandRepository.findById(id)
-                .orElseThrow(CommandNotFoundException::new);
-
-        List<UpdateStockRequest> updateStockRequestsToAdd = new ArrayList<>();
-        for (CommandProduct product : commandToUpdate.getProducts()) {
-            updateStockRequestsToAdd.add(UpdateStockRequest.builder()
-                    .productId(product.getProductId())
-                    .stock(product.getQuantity())
-                    .build()
-            );
+    @Transactional
+    public CommandResponse changeStatus(Long id, CommandStatus status) throws JsonProcessingException {
+        CommandStateMachine.Transition transition = CommandStateMachine.to(status);
+
+        List<CommandLineRow> rows = commandRepository.transition(id, transition.from(), transition.to());
+        if (rows.isEmpty()) {
+            if (!commandRepository.existsById(id)) {
+                throw new CommandNotFoundException();
+            }
+            throw new CommandCouldNotBeUpdatedException();
         }
+        publishCommandsChanged(List.of(id));
 
-        UpdateStock updateStockToAdd = UpdateStock.builder()
-                .request(objectMapper.writeValueAsString(updateStockRequestsToAdd))
-                .uri(ADD_STOCK_URI)
-                .sent(false)
-                .build();
-        updateStockRepository.save(updateStockToAdd);
+        CommandResponse command = CommandLines.toResponses(rows).get(0);
 
-        commandToUpdate.setStatus(Command.CANCELLED);
+        switch (transition.stockEffect()) {
+            case GIVE_BACK -> saveProductsStock(stockRequests(command), ADD_STOCK_URI);
+            case CONSUME -> saveProductsStock(stockRequests(command), CONSUME_STOCK_URI);
+            case NONE -> {
+            }
+        }
 
-        return commandRepository.save(commandToUpdate);
+        return command;
     }
 
-    public Command commandToDo(Long id) throws JsonProcessingException {
-        Command commandToUpdate = commandRepository.findById(id)
-                .orElseThrow(CommandNotFoundException::new);
+    public CommandStatusResult changeStatuses(List<Long> ids, CommandStatus status) {
+        CommandStateMachine.Transition transition = CommandStateMachine.to(status);
+        if (transition.stockEffect() != CommandStateMachine.StockEffect.NONE) {
+            throw new StatusTransitionNotSupportedException();
+        }
 
-        if (!Objects.equals(commandToUpdate.getStatus(), Command.CANCELLED)) {
-            throw new CommandCouldNotBeUpdatedException();
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        Set<Long> moved = new HashSet<>();
+        for (int from = 0; from < distinctIds.size(); from += STATUS_CHUNK_SIZE) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + STATUS_CHUNK_SIZE, distinctIds.size()));
+            moved.addAll(transactionTemplate.execute(transactionStatus -> {
+                List<Long> movable = commandRepository.lockIdsInStatus(chunk, transition.from());
+                if (!movable.isEmpty()) {
+                    commandRepository.updateStatus(movable, transition.to());
+                    publishCommandsChanged(movable);
+                }
+                return movable;
+            }));
         }
 
-        List<UpdateStockRequest> updateStockRequestsToConsume = new ArrayList<>();
-        for (CommandProduct product : commandToUpdate.getProducts()) {
-            updateStockRequestsToConsume.add(UpdateStockRequest.builder()
-                    .productId(product.getProductId())
-                    .stock(product.getQuantity())
-                    .build()
-            );
+        List<Long> movedIds = new ArrayList<>();
+        List<Long> rejectedIds = new ArrayList<>();
+        for (Long id : distinctIds) {
+            (moved.contains(id) ? movedIds : rejectedIds).add(id);
         }
+        return new CommandStatusResult(movedIds, rejectedIds);
+    }
 
-        UpdateStock updateStockToAdd = UpdateStock.builder()
-                .request(objectMapper.writeValueAsString(updateStockRequestsToConsume))
-                .uri(CONSUME_STOCK_URI)
-                .sent(false)
-                .build();
-        updateStockRepository.save(updateStockToAdd);
+    private JsonToken firstToken(JsonParser parser) throws IOException {
+        try {
+            return parser.nextToken();
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
 
-        commandToUpdate.setStatus(Command.TO_DO);
+    private CommandRequest readCommandRequest(JsonNode item) throws JsonProcessingException {
+        CommandRequest commandRequest = objectMapper.treeToValue(item, CommandRequest.class);
+        if (commandRequest == null) {
+            throw new IllegalArgumentException("Command must not be null");
+        }
 
-        return commandRepository.save(commandToUpdate);
+        Set<ConstraintViolation<CommandRequest>> violations = validator.validate(commandRequest);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+        return commandRequest;
     }
 
-    public Command commandInProgress(Long id) {
-        Command commandToUpdate = commandRepository.findById(id)
-                .orElseThrow(CommandNotFoundException::new);
-
-        if (!Objects.equals(commandToUpdate.getStatus(), Command.TO_DO)) {
-            throw new CommandCouldNotBeUpdatedException();
+    private void persistChunk(Map<Integer, Command> chunk, List<CommandBatchResult> results) {
+        if (chunk.isEmpty()) {
+            return;
         }
 
-        commandToUpdate.setStatus(Command.IN_PROGRESS);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<Long, Integer> deltas = new TreeMap<>();
+                List<CommandProduct> commandProducts = new ArrayList<>();
+                for (Command command : chunk.values()) {
+                    for (CommandProduct product : command.getProducts()) {
+                        deltas.merge(product.getProductId(), -product.getQuantity(), Integer::sum);
+                        commandProducts.add(product);
+                    }
+                }
+
+                commandRepository.saveAll(chunk.values());
+                commandProductRepository.saveAll(commandProducts);
+                try {
+                    saveStockDeltas(deltas);
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException(e);
+                }
+                entityManager.flush();
+                publishCommandsChanged(chunk.values().stream().map(Command::getId).toList());
+            });
+            chunk.forEach((index, command) -> results.add(CommandBatchResult.created(index, command.getId())));
+        } catch (RuntimeException e) {
+            // ids drawn before the rollback would make a retry merge the commands instead of inserting them
+            chunk.values().forEach(command -> {
+                command.setId(null);
+                command.getProducts().forEach(product -> product.setId(null));
+            });
+            chunk.keySet().forEach(index -> results.add(CommandBatchResult.rejected(index, "Could not save command: " + e.getMessage())));
+        } finally {
+            // the request may keep a persistence context open across chunks
+            entityManager.clear();
+            chunk.clear();
+        }
+    }
 
-        return commandRepository.save(commandToUpdate);
+    private void writeExportLine(CommandResponse command, ObjectWriter writer, JsonGenerator generator) throws IOException {
+        if (command != null) {
+            writer.writeValue(generator, command);
+            generator.writeRaw('\n');
+        }
     }
 
-    public Command commandPrepared(Long id) {
-        Command commandToUpdate = commandRepository.findById(id)
-                .orElseThrow(CommandNotFoundException::new);
+    Command newCommand(CommandRequest commandRequest) {
+        Command command = Command.builder()
+                .deliveryDate(LocalDate.parse(commandRequest.getDeliveryDate(), Utils.localDateTimeFormatter()))
+                .status(CommandStatus.TO_DO)
+                .products(new ArrayList<>())
+                .build();
 
-        if (!Objects.equals(commandToUpdate.getStatus(), Command.IN_PROGRESS)) {
-            throw new CommandCouldNotBeUpdatedException();
+        double commandPrice = 0.0;
+        for (CommandProductRequest product : commandRequest.getCommandProductList()) {
+            double productTotalPrice = product.getQuantity() * product.getPrice();
+            command.getProducts().add(
+                    CommandProduct.builder()
+                            .command(command)
+                            .productId(product.getProductId())
+                            .productName(product.getProductName())
+                            .quantity(product.getQuantity())
+                            .unitPrice(product.getPrice())
+                            .totalPrice(productTotalPrice)
+                            .build()
+            );
+
+            commandPrice = commandPrice + productTotalPrice;
         }
 
-        commandToUpdate.setStatus(Command.PREPARED);
+        command.setPrice(commandPrice);
+        return command;
+    }
 
-        return commandRepository.save(commandToUpdate);
+    private List<UpdateStockRequest> stockRequests(CommandResponse command) {
+        return command.getProducts().stream()
+                .map(product -> stockRequest(product.getProductId(), product.getQuantity()))
+                .toList();
     }
 
-    public Command commandDelivered(Long id) {
-        Command commandToUpdate = commandRepository.findById(id)
-                .orElseThrow(CommandNotFoundException::new);
+    private UpdateStockRequest stockRequest(Long productId, Integer quantity) {
+        return UpdateStockRequest.builder()
+                .productId(productId)
+                .stock(quantity)
+                .build();
+    }
 
-        if (!Objects.equals(commandToUpdate.getStatus(), Command.PREPARED)) {
-            throw new CommandCouldNotBeUpdatedException();
+    private void saveProductsStock(List<UpdateStockRequest> updateStockRequests, String uri) throws JsonProcessingException {
+        UpdateStock updateStock = UpdateStock.builder()
+                .request(objectMapper.writeValueAsString(updateStockRequests))
+                .uri(uri)
+                .sent(false)
+                .build();
+        saveUpdateStock(updateStock);
+    }
+
+    private void saveStockDeltas(Map<Long, Integer> deltas) throws JsonProcessingException {
+        List<UpdateStockRequest> additions = StockDeltas.additions(deltas);
+        if (!additions.isEmpty()) {
+            saveUpdateStock(UpdateStock.builder()
+                    .request(objectMapper.writeValueAsString(additions))
+                    .uri(ADD_STOCK_URI)
+                    .sent(false)
+                    .build());
         }
 
-        commandToUpdate.setStatus(Command.DELIVERED);
+        List<UpdateStockRequest> consumptions = StockDeltas.consumptions(deltas);
+        if (!consumptions.isEmpty()) {
+            saveUpdateStock(UpdateStock.builder()
+                    .request(objectMapper.writeValueAsString(consumptions))
+                    .uri(CONSUME_STOCK_URI)
+                    .sent(false)
+                    .build());
+        }
+    }
 
-        return commandRepository.save(commandToUpdate);
+    private void publishCommandsChanged(Collection<Long> commandIds) {
+        applicationEventPublisher.publishEvent(new CommandsChangedEvent(commandIds));
+    }
+
+    private void saveUpdateStock(UpdateStock updateStock) {
+        updateStockRepository.save(updateStock);
+        applicationEventPublisher.publishEvent(new UpdateStockSavedEvent(updateStock.getId()));
     }
 }
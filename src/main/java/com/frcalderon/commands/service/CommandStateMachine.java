@@ -0,0 +1,46 @@
+package com.frcalderon.commands.service;
+
+import com.frcalderon.commands.exceptions.StatusTransitionNotSupportedException;
+import com.frcalderon.commands.model.CommandStatus;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+public final class CommandStateMachine {
+
+    public enum StockEffect {
+        NONE,
+        GIVE_BACK,
+        CONSUME
+    }
+
+    public record Transition(Set<CommandStatus> from, CommandStatus to, StockEffect stockEffect) {
+    }
+
+    private static final Map<CommandStatus, Transition> TRANSITIONS = new EnumMap<>(CommandStatus.class);
+
+    static {
+        add(EnumSet.of(CommandStatus.CANCELLED), CommandStatus.TO_DO, StockEffect.CONSUME);
+        add(EnumSet.of(CommandStatus.TO_DO), CommandStatus.IN_PROGRESS, StockEffect.NONE);
+        add(EnumSet.of(CommandStatus.IN_PROGRESS), CommandStatus.PREPARED, StockEffect.NONE);
+        add(EnumSet.of(CommandStatus.PREPARED), CommandStatus.DELIVERED, StockEffect.NONE);
+        add(EnumSet.complementOf(EnumSet.of(CommandStatus.CANCELLED)), CommandStatus.CANCELLED, StockEffect.GIVE_BACK);
+    }
+
+    private CommandStateMachine() {
+    }
+
+    public static Transition to(CommandStatus status) {
+        Transition transition = status == null ? null : TRANSITIONS.get(status);
+        if (transition == null) {
+            throw new StatusTransitionNotSupportedException();
+        }
+        return transition;
+    }
+
+    private static void add(Set<CommandStatus> from, CommandStatus to, StockEffect stockEffect) {
+        TRANSITIONS.put(to, new Transition(Set.copyOf(from), to, stockEffect));
+    }
+}
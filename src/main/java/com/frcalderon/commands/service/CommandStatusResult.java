@@ -0,0 +1,6 @@
+package com.frcalderon.commands.service;
+
+import java.util.List;
+
+public record CommandStatusResult(List<Long> moved, List<Long> rejected) {
+}
@@ -0,0 +1,216 @@
+package com.frcalderon.commands.service;
+
+import com.frcalderon.commands.controller.dto.CommandRequest;
+import com.frcalderon.commands.exceptions.AcceptedCommandNotFoundException;
+import com.frcalderon.commands.exceptions.CommandQueueFullException;
+import com.frcalderon.commands.model.Command;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@Slf4j
+public class CommandWriteBehind implements MeterBinder {
+
+    @Value("${ms-commands.commands.async.enabled:false}")
+    private boolean ENABLED;
+
+    @Value("${ms-commands.commands.async.queue-capacity:10000}")
+    private int QUEUE_CAPACITY;
+
+    @Value("${ms-commands.commands.async.group-size:200}")
+    private int GROUP_SIZE;
+
+    @Value("${ms-commands.commands.async.linger:5ms}")
+    private Duration LINGER;
+
+    @Value("${ms-commands.commands.async.tracking.max-entries:100000}")
+    private int TRACKING_MAX_ENTRIES;
+
+    @Value("${ms-commands.commands.async.retry.max-attempts:3}")
+    private int RETRY_MAX_ATTEMPTS;
+
+    @Value("${ms-commands.commands.async.retry.initial-backoff:100ms}")
+    private Duration RETRY_INITIAL_BACKOFF;
+
+    @Autowired
+    private CommandService commandService;
+
+    @Autowired
+    @Qualifier("commandWriterExecutor")
+    private ThreadPoolTaskExecutor commandWriterExecutor;
+
+    private BlockingQueue<PendingCommand> queue;
+
+    private Map<UUID, AcceptedCommand> tracking;
+
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private volatile boolean running;
+
+    @PostConstruct
+    void init() {
+        queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        tracking = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, AcceptedCommand> eldest) {
+                return size() > TRACKING_MAX_ENTRIES;
+            }
+        };
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("commands.async.queue", this, writeBehind -> writeBehind.queue.size())
+                .description("The number of accepted commands waiting to be written")
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public AcceptedCommand accept(CommandRequest commandRequest) {
+        PendingCommand pendingCommand = new PendingCommand(UUID.randomUUID(), commandService.newCommand(commandRequest));
+        AcceptedCommand accepted = AcceptedCommand.queued(pendingCommand.trackingId());
+
+        track(accepted);
+        if (!queue.offer(pendingCommand)) {
+            synchronized (tracking) {
+                tracking.remove(accepted.trackingId());
+            }
+            throw new CommandQueueFullException();
+        }
+        return accepted;
+    }
+
+    public AcceptedCommand getAccepted(UUID trackingId) {
+        synchronized (tracking) {
+            AcceptedCommand accepted = tracking.get(trackingId);
+            if (accepted == null) {
+                throw new AcceptedCommandNotFoundException();
+            }
+            return accepted;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!ENABLED) {
+            stopped.countDown();
+            return;
+        }
+        running = true;
+        commandWriterExecutor.execute(this::drain);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (!stopped.await(30, TimeUnit.SECONDS)) {
+            log.warn("Command writer did not finish, {} accepted commands were not written", queue.size());
+        }
+    }
+
+    int writeGroup(Duration wait) throws InterruptedException {
+        PendingCommand first = queue.poll(wait.toMillis(), TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return 0;
+        }
+
+        List<PendingCommand> group = new ArrayList<>(GROUP_SIZE);
+        group.add(first);
+        long deadline = System.nanoTime() + LINGER.toNanos();
+        while (group.size() < GROUP_SIZE) {
+            queue.drainTo(group, GROUP_SIZE - group.size());
+            long remaining = deadline - System.nanoTime();
+            if (group.size() >= GROUP_SIZE || remaining <= 0) {
+                break;
+            }
+            PendingCommand next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            group.add(next);
+        }
+
+        // every command was already acknowledged, so a failing group is retried before splitting it up
+        Map<PendingCommand, String> failed = write(group);
+        for (int attempt = 1; !failed.isEmpty() && attempt < RETRY_MAX_ATTEMPTS; attempt++) {
+            Thread.sleep(RETRY_INITIAL_BACKOFF.toMillis() << (attempt - 1));
+            failed = write(new ArrayList<>(failed.keySet()));
+        }
+        if (failed.size() > 1) {
+            Map<PendingCommand, String> failedAlone = new LinkedHashMap<>();
+            for (PendingCommand pendingCommand : failed.keySet()) {
+                failedAlone.putAll(write(List.of(pendingCommand)));
+            }
+            failed = failedAlone;
+        }
+        failed.forEach((pendingCommand, error) -> track(AcceptedCommand.failed(pendingCommand.trackingId(), error)));
+        return group.size();
+    }
+
+    private Map<PendingCommand, String> write(List<PendingCommand> pendingCommands) {
+        Map<PendingCommand, String> failed = new LinkedHashMap<>();
+        List<CommandBatchResult> results = commandService.createAcceptedCommands(pendingCommands.stream()
+                .map(PendingCommand::command)
+                .toList());
+        for (CommandBatchResult result : results) {
+            PendingCommand pendingCommand = pendingCommands.get(result.index());
+            if (result.created()) {
+                track(AcceptedCommand.created(pendingCommand.trackingId(), result.id()));
+            } else {
+                failed.put(pendingCommand, result.error());
+            }
+        }
+        return failed;
+    }
+
+    private void drain() {
+        try {
+            while (running || !queue.isEmpty()) {
+                try {
+                    writeGroup(Duration.ofMillis(100));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    log.error("Command writer failed to write a group: {}", e.getMessage(), e);
+                }
+            }
+        } finally {
+            stopped.countDown();
+        }
+    }
+
+    private void track(AcceptedCommand accepted) {
+        synchronized (tracking) {
+            tracking.put(accepted.trackingId(), accepted);
+        }
+    }
+
+    private record PendingCommand(UUID trackingId, Command command) {
+    }
+}
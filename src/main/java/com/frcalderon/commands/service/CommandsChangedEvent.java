@@ -0,0 +1,6 @@
+package com.frcalderon.commands.service;
+
+import java.util.Collection;
+
+public record CommandsChangedEvent(Collection<Long> commandIds) {
+}
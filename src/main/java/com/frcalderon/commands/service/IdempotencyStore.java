@@ -0,0 +1,208 @@
+package com.frcalderon.commands.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frcalderon.commands.exceptions.IdempotencyKeyInProgressException;
+import com.frcalderon.commands.exceptions.IdempotencyKeyLimitException;
+import com.frcalderon.commands.exceptions.IdempotencyKeyReusedException;
+import com.frcalderon.commands.model.IdempotencyRecord;
+import com.frcalderon.commands.repository.IdempotencyRecordRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+
+// the response is written in the transaction of the call, so it is kept exactly when its changes are
+@Component
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final String ANONYMOUS = "";
+
+    @Value("${ms-commands.idempotency.ttl:24h}")
+    private Duration TTL;
+
+    @Value("${ms-commands.idempotency.lease:1m}")
+    private Duration LEASE;
+
+    @Value("${ms-commands.idempotency.max-keys-per-subject:10000}")
+    private long MAX_KEYS_PER_SUBJECT;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final Clock clock;
+
+    private TransactionTemplate transaction;
+
+    private TransactionTemplate newTransaction;
+
+    public IdempotencyStore() {
+        this(Clock.systemUTC());
+    }
+
+    IdempotencyStore(Clock clock) {
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    void init() {
+        transaction = new TransactionTemplate(transactionManager);
+        newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    public <T, E extends Exception> T execute(String key, Object fingerprint, Class<T> type, Call<T, E> call) throws E {
+        if (key == null || key.isBlank()) {
+            return call.call();
+        }
+
+        String hash = hash(fingerprint);
+        Claim claim = claim(subject(), key, hash);
+        IdempotencyRecord record = claim.record();
+        if (!claim.owned()) {
+            if (!record.getFingerprint().equals(hash)) {
+                throw new IdempotencyKeyReusedException();
+            }
+            if (record.getResponse() == null) {
+                throw new IdempotencyKeyInProgressException();
+            }
+            return read(record.getResponse(), type);
+        }
+
+        try {
+            return transaction.execute(status -> {
+                T response = invoke(call);
+                idempotencyRecordRepository.complete(record.getId(), write(response), clock.instant().plus(TTL));
+                return response;
+            });
+        } catch (CallFailure failure) {
+            release(record);
+            @SuppressWarnings("unchecked")
+            E cause = (E) failure.getCause();
+            throw cause;
+        } catch (RuntimeException | Error e) {
+            release(record);
+            throw e;
+        }
+    }
+
+    public int purgeExpired() {
+        return newTransaction.execute(status -> idempotencyRecordRepository.deleteExpired(clock.instant()));
+    }
+
+    // the unique key fails one of two concurrent claims, which then gets the winner's record
+    private Claim claim(String subject, String key, String fingerprint) {
+        try {
+            return newTransaction.execute(status -> {
+                Instant now = clock.instant();
+                Optional<IdempotencyRecord> existing = idempotencyRecordRepository.findBySubjectAndIdempotencyKey(subject, key);
+                if (existing.isPresent()) {
+                    if (!existing.get().getExpiresAt().isBefore(now)) {
+                        return new Claim(existing.get(), false);
+                    }
+                    idempotencyRecordRepository.deleteIfExpired(existing.get().getId(), now);
+                }
+                // concurrent claims may overshoot the cap by a few keys; it only has to stop unbounded growth
+                if (idempotencyRecordRepository.countBySubjectAndExpiresAtGreaterThanEqual(subject, now) >= MAX_KEYS_PER_SUBJECT) {
+                    throw new IdempotencyKeyLimitException();
+                }
+
+                return new Claim(idempotencyRecordRepository.saveAndFlush(IdempotencyRecord.builder()
+                        .subject(subject)
+                        .idempotencyKey(key)
+                        .fingerprint(fingerprint)
+                        .expiresAt(now.plus(LEASE))
+                        .build()), true);
+            });
+        } catch (DataIntegrityViolationException e) {
+            return newTransaction.execute(status -> idempotencyRecordRepository.findBySubjectAndIdempotencyKey(subject, key)
+                    .map(record -> new Claim(record, false))
+                    .orElseThrow(IdempotencyKeyInProgressException::new));
+        }
+    }
+
+    private void release(IdempotencyRecord record) {
+        newTransaction.executeWithoutResult(status -> idempotencyRecordRepository.deleteById(record.getId()));
+    }
+
+    // keys are scoped to the authenticated caller (the JWT subject), so one client cannot replay another's
+    private String subject() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? ANONYMOUS : authentication.getName();
+    }
+
+    private String hash(Object fingerprint) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(objectMapper.writeValueAsString(fingerprint).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not fingerprint the request", e);
+        }
+    }
+
+    private String write(Object response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not store the response", e);
+        }
+    }
+
+    private <T> T read(String response, Class<T> type) {
+        try {
+            return objectMapper.readValue(response, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read the stored response", e);
+        }
+    }
+
+    private static <T, E extends Exception> T invoke(Call<T, E> call) {
+        try {
+            return call.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CallFailure(e);
+        }
+    }
+
+    // carries a checked exception of the call out of the transaction callback
+    private static class CallFailure extends RuntimeException {
+
+        CallFailure(Exception cause) {
+            super(cause);
+        }
+    }
+
+    private record Claim(IdempotencyRecord record, boolean owned) {
+    }
+}
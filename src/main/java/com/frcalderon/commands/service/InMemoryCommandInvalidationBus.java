@@ -0,0 +1,37 @@
+package com.frcalderon.commands.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+public class InMemoryCommandInvalidationBus implements CommandInvalidationBus {
+
+    private final List<Consumer<Collection<Long>>> subscribers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(Collection<Long> commandIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deliver(commandIds);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deliver(commandIds);
+            }
+        });
+    }
+
+    private void deliver(Collection<Long> commandIds) {
+        subscribers.forEach(subscriber -> subscriber.accept(commandIds));
+    }
+
+    @Override
+    public void subscribe(Consumer<Collection<Long>> subscriber, Runnable reset) {
+        subscribers.add(subscriber);
+    }
+}
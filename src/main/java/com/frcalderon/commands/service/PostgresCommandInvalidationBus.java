@@ -0,0 +1,140 @@
+package com.frcalderon.commands.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+// NOTIFY runs on the connection of the writing transaction, so it is delivered only if that commits;
+// notifications missed while the listener reconnects are not replayed, hence the reset
+@Slf4j
+public class PostgresCommandInvalidationBus implements CommandInvalidationBus {
+
+    // 20 digits and a comma per id stay under the payload limit
+    static final int IDS_PER_NOTIFICATION = 300;
+
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(5);
+
+    private static final Duration RECONNECT_DELAY = Duration.ofSeconds(5);
+
+    private final DataSource dataSource;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String channel;
+
+    private final List<Consumer<Collection<Long>>> subscribers = new CopyOnWriteArrayList<>();
+
+    private final List<Runnable> resets = new CopyOnWriteArrayList<>();
+
+    private Thread listener;
+
+    private volatile boolean running;
+
+    public PostgresCommandInvalidationBus(DataSource dataSource, String channel) {
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid invalidation channel " + channel);
+        }
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.channel = channel;
+    }
+
+    @Override
+    public void publish(Collection<Long> commandIds) {
+        List<String> payloads = payloads(commandIds);
+        if (payloads.isEmpty()) {
+            return;
+        }
+        payloads.forEach(payload -> jdbcTemplate.queryForList("select pg_notify(?, ?)", channel, payload));
+    }
+
+    @Override
+    public synchronized void subscribe(Consumer<Collection<Long>> subscriber, Runnable reset) {
+        subscribers.add(subscriber);
+        resets.add(reset);
+        if (listener == null) {
+            running = true;
+            listener = new Thread(this::listen, "command-invalidation-listener");
+            listener.setDaemon(true);
+            listener.start();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    private void listen() {
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                if (connectedBefore) {
+                    resets.forEach(Runnable::run);
+                }
+                connectedBefore = true;
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) POLL_TIMEOUT.toMillis());
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            Collection<Long> commandIds = parse(notification.getParameter());
+                            subscribers.forEach(subscriber -> subscriber.accept(commandIds));
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Lost the command invalidation channel {}, listening again in {}", channel, RECONNECT_DELAY, e);
+                try {
+                    Thread.sleep(RECONNECT_DELAY.toMillis());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    static List<String> payloads(Collection<Long> commandIds) {
+        List<Long> ids = new ArrayList<>(commandIds);
+        List<String> payloads = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += IDS_PER_NOTIFICATION) {
+            payloads.add(ids.subList(from, Math.min(from + IDS_PER_NOTIFICATION, ids.size())).stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(",")));
+        }
+        return payloads;
+    }
+
+    static Collection<Long> parse(String payload) {
+        if (payload == null || payload.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.stream(payload.split(",")).map(Long::valueOf).toList();
+    }
+}
@@ -0,0 +1,116 @@
+package com.frcalderon.commands.service;
+
+import com.frcalderon.commands.model.UpdateStock;
+import com.frcalderon.commands.model.UpdateStockBatchEntry;
+import com.frcalderon.commands.model.UpdateStockBatchRequest;
+import com.frcalderon.commands.model.UpdateStockBatchResponse;
+import com.frcalderon.commands.model.UpdateStockBatchResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@Slf4j
+public class ProductsStockClient {
+
+    @Value("${ms-commands.ms-products.base-url:http://localhost:8082/products/}")
+    private String PRODUCTS_BASE_URL;
+
+    @Value("${ms-commands.ms-products.batch-stock-uri:stock/batch}")
+    private String BATCH_STOCK_URI;
+
+    @Autowired
+    @Qualifier("productsRestTemplate")
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private UpdateStockMetrics updateStockMetrics;
+
+    public UpdateStockSendResult send(UpdateStock updateStock) {
+        String url = PRODUCTS_BASE_URL + updateStock.getUri();
+        UpdateStockSendResult result;
+
+        long start = System.nanoTime();
+        try {
+            log.debug("Sending request to update products {}: {}", url, updateStock.getRequest());
+            ResponseEntity<String> response = restTemplate.postForEntity(url, new HttpEntity<>(updateStock.getRequest(), headers()), String.class);
+
+            result = response.getStatusCode().is2xxSuccessful()
+                    ? UpdateStockSendResult.SENT
+                    : UpdateStockSendResult.failed("Unexpected status " + response.getStatusCode());
+        } catch (Exception e) {
+            log.warn("Could not update stock for row {}: {}", updateStock.getId(), e.getMessage());
+            result = UpdateStockSendResult.failed(e.getMessage());
+        }
+        updateStockMetrics.recordDispatch(updateStock.getUri(), System.nanoTime() - start);
+        updateStockMetrics.recordRow(updateStock.getUri(), result.sent());
+
+        return result;
+    }
+
+    // entries missing from the response are reported as failed
+    public List<UpdateStockSendResult> sendBatch(List<UpdateStock> updateStocks) {
+        List<UpdateStockBatchEntry> entries = new ArrayList<>();
+        List<UpdateStockSendResult> results = new ArrayList<>();
+        for (int i = 0; i < updateStocks.size(); i++) {
+            entries.add(UpdateStockBatchEntry.builder()
+                    .id(i)
+                    .uri(updateStocks.get(i).getUri())
+                    .request(updateStocks.get(i).getRequest())
+                    .build());
+            results.add(UpdateStockSendResult.failed("Missing from batch response"));
+        }
+
+        String url = PRODUCTS_BASE_URL + BATCH_STOCK_URI;
+
+        long start = System.nanoTime();
+        try {
+            log.debug("Sending batch of {} requests to update products {}", entries.size(), url);
+            ResponseEntity<UpdateStockBatchResponse> response = restTemplate.postForEntity(url,
+                    new HttpEntity<>(UpdateStockBatchRequest.builder().entries(entries).build(), headers()),
+                    UpdateStockBatchResponse.class);
+
+            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null && response.getBody().getResults() != null) {
+                for (UpdateStockBatchResult result : response.getBody().getResults()) {
+                    if (result.getId() != null && result.getId() >= 0 && result.getId() < results.size()) {
+                        if (result.isSuccess()) {
+                            results.set(result.getId(), UpdateStockSendResult.SENT);
+                        } else {
+                            log.warn("Could not update stock for row {}: {}", updateStocks.get(result.getId()).getId(), result.getError());
+                            results.set(result.getId(), UpdateStockSendResult.failed(result.getError()));
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Could not update stock for batch of {} rows: {}", entries.size(), e.getMessage());
+            results.replaceAll(result -> UpdateStockSendResult.failed(e.getMessage()));
+        }
+        updateStockMetrics.recordDispatch(BATCH_STOCK_URI, System.nanoTime() - start);
+        for (int i = 0; i < updateStocks.size(); i++) {
+            updateStockMetrics.recordRow(updateStocks.get(i).getUri(), results.get(i).sent());
+        }
+
+        return results;
+    }
+
+    public static int entrySize(UpdateStock updateStock) {
+        return updateStock.getRequest().length() + updateStock.getUri().length() + 40;
+    }
+
+    private HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return headers;
+    }
+}
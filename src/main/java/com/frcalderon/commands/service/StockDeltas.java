@@ -0,0 +1,46 @@
+package com.frcalderon.commands.service;
+
+import com.frcalderon.commands.model.UpdateStockRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// positive quantities give stock back to ms-products, negative ones consume it
+public final class StockDeltas {
+
+    private StockDeltas() {
+    }
+
+    public static void accumulate(Map<Long, Integer> deltas, List<UpdateStockRequest> requests, int sign) {
+        for (UpdateStockRequest request : requests) {
+            deltas.merge(request.getProductId(), sign * request.getStock(), Integer::sum);
+        }
+    }
+
+    public static List<UpdateStockRequest> additions(Map<Long, Integer> deltas) {
+        List<UpdateStockRequest> additions = new ArrayList<>();
+        deltas.forEach((productId, quantity) -> {
+            if (quantity > 0) {
+                additions.add(UpdateStockRequest.builder()
+                        .productId(productId)
+                        .stock(quantity)
+                        .build());
+            }
+        });
+        return additions;
+    }
+
+    public static List<UpdateStockRequest> consumptions(Map<Long, Integer> deltas) {
+        List<UpdateStockRequest> consumptions = new ArrayList<>();
+        deltas.forEach((productId, quantity) -> {
+            if (quantity < 0) {
+                consumptions.add(UpdateStockRequest.builder()
+                        .productId(productId)
+                        .stock(-quantity)
+                        .build());
+            }
+        });
+        return consumptions;
+    }
+}
@@ -0,0 +1,56 @@
+package com.frcalderon.commands.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// rows sharing a product, even through another row, share a lane and keep their order
+public final class UpdateStockLanes {
+
+    private UpdateStockLanes() {
+    }
+
+    public static <T> List<List<T>> partition(List<T> rows, Function<T, Collection<Long>> productIds) {
+        int[] parents = new int[rows.size()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+
+        Map<Long, Integer> firstRowByProduct = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            for (Long productId : productIds.apply(rows.get(i))) {
+                Integer first = firstRowByProduct.putIfAbsent(productId, i);
+                if (first != null) {
+                    union(parents, first, i);
+                }
+            }
+        }
+
+        Map<Integer, List<T>> lanes = new LinkedHashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            lanes.computeIfAbsent(find(parents, i), root -> new ArrayList<>()).add(rows.get(i));
+        }
+
+        return new ArrayList<>(lanes.values());
+    }
+
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parents, int a, int b) {
+        int rootA = find(parents, a);
+        int rootB = find(parents, b);
+        if (rootA != rootB) {
+            parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.frcalderon.commands.service;
+
+import com.frcalderon.commands.repository.UpdateStockRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class UpdateStockMetrics implements MeterBinder {
+
+    public static final String SENT_OUTCOME = "sent";
+    public static final String FAILED_OUTCOME = "failed";
+
+    @Autowired
+    private UpdateStockRepository updateStockRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("update.stock.backlog", updateStockRepository, UpdateStockRepository::countBySentFalseAndDeadFalse)
+                .description("The number of stock update rows waiting to be sent to ms-products")
+                .register(registry);
+        Gauge.builder("update.stock.dead", updateStockRepository, UpdateStockRepository::countByDeadTrue)
+                .description("The number of stock update rows that ran out of attempts")
+                .register(registry);
+        TimeGauge.builder("update.stock.oldest.age", updateStockRepository, TimeUnit.MILLISECONDS, this::oldestUnsentAge)
+                .description("The age of the oldest stock update row waiting to be sent to ms-products")
+                .register(registry);
+    }
+
+    public void recordDispatch(String uri, long durationNanos) {
+        Timer.builder("update.stock.dispatch")
+                .tag("uri", uri)
+                .description("The latency of requests sent to ms-products to update stock")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRow(String uri, boolean sent) {
+        Counter.builder("update.stock.rows")
+                .tag("uri", uri)
+                .tag("outcome", sent ? SENT_OUTCOME : FAILED_OUTCOME)
+                .description("The number of stock update rows sent to ms-products, by outcome")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordDrain(int rows) {
+        DistributionSummary.builder("update.stock.drain.rows")
+                .description("The number of stock update rows marked as sent by a drain")
+                .register(meterRegistry)
+                .record(rows);
+    }
+
+    private double oldestUnsentAge(UpdateStockRepository repository) {
+        Instant oldest = repository.findOldestUnsentCreatedAt();
+        return oldest == null ? 0 : Math.max(Duration.between(oldest, Instant.now()).toMillis(), 0);
+    }
+}
@@ -0,0 +1,76 @@
+package com.frcalderon.commands.service;
+
+import com.frcalderon.commands.repository.UpdateStockArchiveRepository;
+import com.frcalderon.commands.repository.UpdateStockRepository;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+@Service
+@Data
+@Slf4j
+public class UpdateStockRetentionService {
+
+    public static final String ARCHIVE_MODE = "archive";
+    public static final String DELETE_MODE = "delete";
+    public static final String NONE_MODE = "none";
+
+    @Value("${ms-commands.update-stock.retention.mode:archive}")
+    private String MODE;
+
+    @Value("${ms-commands.update-stock.retention.max-age:7d}")
+    private Duration MAX_AGE;
+
+    @Value("${ms-commands.update-stock.retention.chunk-size:500}")
+    private int CHUNK_SIZE;
+
+    @Autowired
+    private UpdateStockRepository updateStockRepository;
+
+    @Autowired
+    private UpdateStockArchiveRepository updateStockArchiveRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // one short transaction per chunk, so the purge can stop anywhere without losing rows
+    public int purgeSentUpdateStocks() {
+        if (NONE_MODE.equals(MODE)) {
+            return 0;
+        }
+
+        Instant cutoff = Instant.now().minus(MAX_AGE);
+        int purged = 0;
+        int chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> purgeChunk(cutoff));
+            purged += chunk;
+        } while (chunk == CHUNK_SIZE);
+
+        if (purged > 0) {
+            log.info("Purged {} stock update rows sent before {} ({})", purged, cutoff, MODE);
+        }
+        return purged;
+    }
+
+    private int purgeChunk(Instant cutoff) {
+        List<Long> ids = updateStockRepository.findSentBefore(cutoff, PageRequest.ofSize(CHUNK_SIZE));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        if (ARCHIVE_MODE.equals(MODE)) {
+            updateStockArchiveRepository.archiveSent(ids, Instant.now());
+        }
+        updateStockRepository.deleteSent(ids);
+        return ids.size();
+    }
+}
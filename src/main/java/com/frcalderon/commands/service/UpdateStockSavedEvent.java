@@ -0,0 +1,4 @@
+package com.frcalderon.commands.service;
+
+public record UpdateStockSavedEvent(Long updateStockId) {
+}
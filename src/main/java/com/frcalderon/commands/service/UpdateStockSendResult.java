@@ -0,0 +1,10 @@
+package com.frcalderon.commands.service;
+
+public record UpdateStockSendResult(boolean sent, String error) {
+
+    public static final UpdateStockSendResult SENT = new UpdateStockSendResult(true, null);
+
+    public static UpdateStockSendResult failed(String error) {
+        return new UpdateStockSendResult(false, error);
+    }
+}
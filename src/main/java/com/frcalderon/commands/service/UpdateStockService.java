@@ -1,52 +1,561 @@
 package com.frcalderon.commands.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frcalderon.commands.exceptions.UpdateStockNotFoundException;
 import com.frcalderon.commands.model.UpdateStock;
+import com.frcalderon.commands.model.UpdateStockHold;
+import com.frcalderon.commands.model.UpdateStockRequest;
+import com.frcalderon.commands.repository.UpdateStockHoldRepository;
 import com.frcalderon.commands.repository.UpdateStockRepository;
 import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
 @Service
 @Data
+@Slf4j
 public class UpdateStockService {
 
-    @Value("${ms-commands.ms-products.base-url:http://localhost:8082/products/}")
-    private String PRODUCTS_BASE_URL;
+    public static final String SINGLE_TRANSPORT = "single";
+    public static final String BATCH_TRANSPORT = "batch";
+
+    @Value("${ms-commands.ms-products.add-stock-uri:stock/add}")
+    private String ADD_STOCK_URI;
+
+    @Value("${ms-commands.ms-products.consume-stock-uri:stock/consume}")
+    private String CONSUME_STOCK_URI;
+
+    @Value("${ms-commands.update-stock.page-size:500}")
+    private int PAGE_SIZE;
+
+    @Value("${ms-commands.update-stock.claim.owner:${HOSTNAME:${random.uuid}}}")
+    private String CLAIM_OWNER;
+
+    @Value("${ms-commands.update-stock.claim.lease:5m}")
+    private Duration CLAIM_LEASE;
+
+    @Value("${ms-commands.update-stock.hold.max-rows:10000}")
+    private int HOLD_MAX_ROWS;
+
+    @Value("${ms-commands.update-stock.retry.max-attempts:10}")
+    private int MAX_ATTEMPTS;
+
+    @Value("${ms-commands.update-stock.retry.initial-backoff:1s}")
+    private Duration INITIAL_BACKOFF;
+
+    @Value("${ms-commands.update-stock.retry.max-backoff:30m}")
+    private Duration MAX_BACKOFF;
+
+    @Value("${ms-commands.update-stock.coalesce:true}")
+    private boolean COALESCE;
+
+    @Value("${ms-commands.update-stock.transport:single}")
+    private String TRANSPORT;
+
+    @Value("${ms-commands.update-stock.batch.max-rows:100}")
+    private int BATCH_MAX_ROWS;
+
+    @Value("${ms-commands.update-stock.batch.max-bytes:262144}")
+    private int BATCH_MAX_BYTES;
 
     @Autowired
     private UpdateStockRepository updateStockRepository;
 
+    @Autowired
+    private UpdateStockHoldRepository updateStockHoldRepository;
+
+    @Autowired
+    private ProductsStockClient productsStockClient;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UpdateStockMetrics updateStockMetrics;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    @Qualifier("updateStockDispatchExecutor")
+    private AsyncTaskExecutor updateStockDispatchExecutor;
+
+    @Autowired
+    @Qualifier("updateStockTriggerExecutor")
+    private ThreadPoolTaskExecutor updateStockTriggerExecutor;
+
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+
+    // requests while one is pending fold into it; one arriving during a drain runs one more drain after it
+    public void requestDrain() {
+        if (drainRequested.compareAndSet(false, true)) {
+            updateStockTriggerExecutor.execute(() -> {
+                try {
+                    sendRequestToUpdateStock();
+                } catch (Exception e) {
+                    log.warn("Triggered stock update drain failed: {}", e.getMessage());
+                }
+            });
+        }
+    }
+
+    // a row waits while an earlier unsent row touches one of its products, keeping the id order per product
     public void sendRequestToUpdateStock() {
-        List<UpdateStock> updateStockList = updateStockRepository.findAllBySent(false);
+        drainLock.lock();
+        try {
+            drainRequested.set(false);
+            drain();
+        } finally {
+            drainLock.unlock();
+        }
+    }
 
-        RestTemplate restTemplate = new RestTemplate();
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
+    public List<UpdateStock> getDeadUpdateStocks() {
+        return updateStockRepository.findTop100ByDeadTrueOrderByIdAsc();
+    }
 
-        for (UpdateStock updateStock : updateStockList) {
-            HttpEntity<String> request = new HttpEntity<>(updateStock.getRequest(), headers);
-            String url = PRODUCTS_BASE_URL + updateStock.getUri();
-            System.out.println(url);
+    public int requeueDeadUpdateStocks() {
+        int requeued = transactionTemplate.execute(status -> {
+            updateStockHoldRepository.releaseDead();
+            return updateStockRepository.requeueDead();
+        });
+        if (requeued > 0) {
+            requestDrain();
+        }
+        return requeued;
+    }
+
+    public void requeueDeadUpdateStock(Long id) {
+        int requeued = transactionTemplate.execute(status -> {
+            updateStockHoldRepository.releaseDead(id);
+            return updateStockRepository.requeueDead(id);
+        });
+        if (requeued == 0) {
+            throw new UpdateStockNotFoundException();
+        }
+        requestDrain();
+    }
+
+    private void drain() {
+        Long maxId = updateStockRepository.findMaxId();
+        if (maxId == null) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        Map<Long, Long> heldFrom = new HashMap<>();
+        List<UpdateStockHold> holds = updateStockHoldRepository.findHolding(now, PageRequest.ofSize(HOLD_MAX_ROWS));
+        holds.forEach(hold -> heldFrom.merge(hold.getProductId(), hold.getUpdateStockId(), Math::min));
+        if (holds.size() == HOLD_MAX_ROWS) {
+            // holds past the cap are on later rows, so they cannot hold back a row up to the last one read
+            maxId = Math.min(maxId, holds.get(holds.size() - 1).getUpdateStockId());
+        }
+
+        List<UpdateStock> leased = updateStockRepository.findLeasedByOthers(now, CLAIM_OWNER, PageRequest.ofSize(HOLD_MAX_ROWS));
+        for (UpdateStock updateStock : leased) {
+            holdProducts(heldFrom, readRequests(updateStock), updateStock.getId());
+        }
+        if (leased.size() == HOLD_MAX_ROWS) {
+            maxId = Math.min(maxId, leased.get(leased.size() - 1).getId());
+        }
 
-            try {
-                System.out.println("Sending request to update products: " + updateStock.getRequest());
-                ResponseEntity<String> response = restTemplate.postForEntity(url, request, String.class);
+        int drained = 0;
+        long lastId = 0L;
+        List<UpdateStock> page;
+        do {
+            page = claimPage(lastId + 1, maxId);
+            if (page.isEmpty()) {
+                break;
+            }
+
+            Map<UpdateStock, List<UpdateStockRequest>> requests = new IdentityHashMap<>();
+            for (UpdateStock updateStock : page) {
+                requests.put(updateStock, readRequests(updateStock));
+            }
 
-                if (response.getStatusCode().is2xxSuccessful()) {
-                    updateStock.setSent(true);
-                    updateStockRepository.save(updateStock);
+            List<UpdateStock> ready = holdBack(page, requests, heldFrom);
+
+            List<UpdateStock> coalesced = new ArrayList<>();
+            List<UpdateStock> toSend = COALESCE ? coalesce(ready, page, requests, coalesced) : ready;
+
+            Map<UpdateStock, UpdateStockSendResult> results = dispatch(toSend, requests, ConcurrentHashMap.newKeySet());
+            drained += settle(page, coalesced, toSend, requests, results);
+
+            // later pages only hold ids above this page, so any id of it orders them behind
+            for (UpdateStock updateStock : toSend) {
+                UpdateStockSendResult result = results.get(updateStock);
+                if (result == null || !result.sent()) {
+                    holdProducts(heldFrom, requests.get(updateStock), page.get(0).getId());
                 }
-            } catch (Exception e) {
-                System.out.println(e.getMessage());
             }
+
+            lastId = page.get(page.size() - 1).getId();
+        } while (page.size() == PAGE_SIZE);
+
+        updateStockMetrics.recordDrain(drained);
+    }
+
+    // leases of a replica that dies mid-drain expire, and the rows are then claimed again
+    private List<UpdateStock> claimPage(long fromId, long toId) {
+        return transactionTemplate.execute(status -> {
+            Instant now = Instant.now();
+            List<UpdateStock> page = updateStockRepository.findClaimable(fromId, toId, now, PageRequest.ofSize(PAGE_SIZE));
+            if (!page.isEmpty()) {
+                updateStockRepository.claim(page.stream().map(UpdateStock::getId).toList(), CLAIM_OWNER, now.plus(CLAIM_LEASE));
+            }
+            return page;
+        });
+    }
+
+    private List<UpdateStock> holdBack(List<UpdateStock> page, Map<UpdateStock, List<UpdateStockRequest>> requests,
+                                       Map<Long, Long> heldFrom) {
+        List<UpdateStock> ready = new ArrayList<>();
+        for (UpdateStock updateStock : page) {
+            List<UpdateStockRequest> rowRequests = requests.get(updateStock);
+            boolean held = rowRequests != null && rowRequests.stream()
+                    .map(request -> heldFrom.get(request.getProductId()))
+                    .anyMatch(from -> from != null && from < updateStock.getId());
+            if (held) {
+                holdProducts(heldFrom, rowRequests, updateStock.getId());
+            } else {
+                ready.add(updateStock);
+            }
+        }
+        return ready;
+    }
+
+    private void holdProducts(Map<Long, Long> heldFrom, List<UpdateStockRequest> requests, Long fromId) {
+        if (requests != null) {
+            requests.forEach(request -> heldFrom.merge(request.getProductId(), fromId, Math::min));
+        }
+    }
+
+    // net rows never jump the first held row of the page
+    private List<UpdateStock> coalesce(List<UpdateStock> ready, List<UpdateStock> page,
+                                       Map<UpdateStock, List<UpdateStockRequest>> requests, List<UpdateStock> coalesced) {
+        Map<Long, Integer> deltas = new TreeMap<>();
+        List<UpdateStock> toSend = new ArrayList<>();
+        List<UpdateStock> afterHeld = new ArrayList<>();
+
+        // ready keeps the page order, so the first position where they differ is the first held row
+        Long firstHeldId = null;
+        for (int i = 0; i < page.size() && firstHeldId == null; i++) {
+            if (i >= ready.size() || ready.get(i) != page.get(i)) {
+                firstHeldId = page.get(i).getId();
+            }
+        }
+
+        for (UpdateStock updateStock : ready) {
+            List<UpdateStockRequest> rowRequests = requests.get(updateStock);
+            if (firstHeldId != null && updateStock.getId() > firstHeldId) {
+                afterHeld.add(updateStock);
+            } else if (rowRequests != null && ADD_STOCK_URI.equals(updateStock.getUri())) {
+                StockDeltas.accumulate(deltas, rowRequests, 1);
+                coalesced.add(updateStock);
+            } else if (rowRequests != null && CONSUME_STOCK_URI.equals(updateStock.getUri())) {
+                StockDeltas.accumulate(deltas, rowRequests, -1);
+                coalesced.add(updateStock);
+            } else {
+                toSend.add(updateStock);
+            }
+        }
+
+        int attempts = coalesced.stream().mapToInt(UpdateStock::getAttempts).max().orElse(0);
+        Instant createdAt = coalesced.stream().map(UpdateStock::getCreatedAt).filter(Objects::nonNull)
+                .min(Instant::compareTo).orElse(null);
+        addNetRow(toSend, requests, StockDeltas.additions(deltas), ADD_STOCK_URI, attempts, createdAt);
+        addNetRow(toSend, requests, StockDeltas.consumptions(deltas), CONSUME_STOCK_URI, attempts, createdAt);
+        toSend.addAll(afterHeld);
+
+        return toSend;
+    }
+
+    private void addNetRow(List<UpdateStock> toSend, Map<UpdateStock, List<UpdateStockRequest>> requests,
+                           List<UpdateStockRequest> rowRequests, String uri, int attempts, Instant createdAt) {
+        if (rowRequests.isEmpty()) {
+            return;
+        }
+
+        try {
+            UpdateStock updateStock = UpdateStock.builder()
+                    .request(objectMapper.writeValueAsString(rowRequests))
+                    .uri(uri)
+                    .sent(false)
+                    .attempts(attempts)
+                    .createdAt(createdAt)
+                    .build();
+            requests.put(updateStock, rowRequests);
+            toSend.add(updateStock);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // a failed net row is written over the lowest unused source row, so it stays ahead of later rows of its products
+    private int settle(List<UpdateStock> page, List<UpdateStock> coalesced, List<UpdateStock> toSend,
+                       Map<UpdateStock, List<UpdateStockRequest>> requests, Map<UpdateStock, UpdateStockSendResult> results) {
+        Instant now = Instant.now();
+        List<UpdateStock> sources = new ArrayList<>(coalesced);
+        List<Long> sentIds = new ArrayList<>();
+        List<UpdateStock> failed = new ArrayList<>();
+        List<UpdateStock> pending = new ArrayList<>();
+        List<UpdateStock> created = new ArrayList<>();
+
+        for (UpdateStock updateStock : toSend) {
+            UpdateStockSendResult result = results.get(updateStock);
+            if (result != null && result.sent()) {
+                if (updateStock.getId() != null) {
+                    sentIds.add(updateStock.getId());
+                }
+                continue;
+            }
+
+            boolean net = updateStock.getId() == null;
+            if (net && sources.isEmpty()) {
+                // only a source row with mixed signs yields more net rows than sources
+                created.add(updateStock);
+            } else if (net) {
+                updateStock.setId(sources.remove(0).getId());
+                pending.add(updateStock);
+            }
+            if (result != null) {
+                recordFailure(updateStock, result.error(), now);
+                if (!net) {
+                    failed.add(updateStock);
+                }
+            }
+        }
+        for (UpdateStock updateStock : sources) {
+            sentIds.add(updateStock.getId());
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!sentIds.isEmpty()) {
+                updateStockRepository.markSent(sentIds, now);
+            }
+            for (UpdateStock updateStock : pending) {
+                updateStockRepository.reschedule(updateStock.getId(), updateStock.getRequest(), updateStock.getUri(),
+                        updateStock.getAttempts(), updateStock.getNextAttemptAt(), updateStock.getLastError(),
+                        updateStock.isDead());
+            }
+            for (UpdateStock updateStock : failed) {
+                updateStockRepository.recordFailure(updateStock.getId(), updateStock.getAttempts(),
+                        updateStock.getNextAttemptAt(), updateStock.getLastError(), updateStock.isDead());
+            }
+            updateStockRepository.saveAll(created);
+            List<UpdateStock> unsent = new ArrayList<>(pending);
+            unsent.addAll(failed);
+            unsent.addAll(created);
+            storeHolds(sentIds, unsent, requests);
+            updateStockRepository.release(page.stream().map(UpdateStock::getId).toList(), CLAIM_OWNER);
+        });
+
+        return sentIds.size();
+    }
+
+    // a product keeps the hold of its lowest failed row; holds of settled rows are dropped first
+    private void storeHolds(List<Long> sentIds, List<UpdateStock> unsent, Map<UpdateStock, List<UpdateStockRequest>> requests) {
+        List<Long> settledIds = new ArrayList<>(sentIds);
+        unsent.forEach(updateStock -> settledIds.add(updateStock.getId()));
+        if (!settledIds.isEmpty()) {
+            updateStockHoldRepository.release(settledIds);
+        }
+
+        Map<Long, UpdateStock> holders = new HashMap<>();
+        for (UpdateStock updateStock : unsent) {
+            List<UpdateStockRequest> rowRequests = requests.get(updateStock);
+            if (rowRequests != null) {
+                rowRequests.forEach(request -> holders.merge(request.getProductId(), updateStock,
+                        (a, b) -> a.getId() < b.getId() ? a : b));
+            }
+        }
+        if (holders.isEmpty()) {
+            return;
+        }
+
+        Map<Long, UpdateStockHold> stored = updateStockHoldRepository.findAllById(holders.keySet()).stream()
+                .collect(Collectors.toMap(UpdateStockHold::getProductId, hold -> hold));
+        List<UpdateStockHold> created = new ArrayList<>();
+        holders.forEach((productId, updateStock) -> {
+            UpdateStockHold hold = stored.get(productId);
+            if (hold == null) {
+                created.add(UpdateStockHold.builder()
+                        .productId(productId)
+                        .updateStockId(updateStock.getId())
+                        .heldUntil(updateStock.getNextAttemptAt())
+                        .build());
+            } else if (updateStock.getId() < hold.getUpdateStockId()) {
+                hold.setUpdateStockId(updateStock.getId());
+                hold.setHeldUntil(updateStock.getNextAttemptAt());
+            }
+        });
+        updateStockHoldRepository.saveAll(created);
+    }
+
+    private void recordFailure(UpdateStock updateStock, String error, Instant now) {
+        int attempts = updateStock.getAttempts() + 1;
+        updateStock.setAttempts(attempts);
+        updateStock.setLastError(error == null ? null : error.substring(0, Math.min(error.length(), 1000)));
+
+        if (attempts >= MAX_ATTEMPTS) {
+            log.error("Stock update row {} is dead after {} attempts: {}", updateStock.getId(), attempts, error);
+            updateStock.setDead(true);
+            updateStock.setNextAttemptAt(null);
+        } else {
+            updateStock.setNextAttemptAt(now.plus(backoff(attempts)));
+        }
+    }
+
+    // equal jitter: half of the capped delay is kept and half randomized
+    private Duration backoff(int attempts) {
+        long exponential = INITIAL_BACKOFF.toMillis() << Math.min(attempts - 1, 30);
+        long capped = Math.min(Math.max(exponential, 0), MAX_BACKOFF.toMillis());
+        long half = capped / 2;
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(half + 1));
+    }
+
+    private Map<UpdateStock, UpdateStockSendResult> dispatch(List<UpdateStock> rows, Map<UpdateStock, List<UpdateStockRequest>> requests,
+                                                             Set<Long> blockedProducts) {
+        Map<UpdateStock, Set<Long>> productIds = new IdentityHashMap<>();
+        for (UpdateStock updateStock : rows) {
+            List<UpdateStockRequest> rowRequests = requests.get(updateStock);
+            productIds.put(updateStock, rowRequests == null ? Set.of() : rowRequests.stream()
+                    .map(UpdateStockRequest::getProductId)
+                    .collect(Collectors.toSet()));
+        }
+
+        boolean batch = BATCH_TRANSPORT.equals(TRANSPORT);
+        List<List<UpdateStock>> partition = UpdateStockLanes.partition(rows, productIds::get);
+        if (batch) {
+            partition = mergeLanes(partition);
+        }
+
+        List<CompletableFuture<Map<UpdateStock, UpdateStockSendResult>>> lanes = partition.stream()
+                .map(lane -> CompletableFuture.supplyAsync(
+                        () -> batch ? sendBatches(lane, productIds, blockedProducts) : sendLane(lane, productIds, blockedProducts),
+                        updateStockDispatchExecutor))
+                .toList();
+
+        Map<UpdateStock, UpdateStockSendResult> results = new IdentityHashMap<>();
+        for (CompletableFuture<Map<UpdateStock, UpdateStockSendResult>> lane : lanes) {
+            results.putAll(lane.join());
+        }
+        return results;
+    }
+
+    private Map<UpdateStock, UpdateStockSendResult> sendLane(List<UpdateStock> lane, Map<UpdateStock, Set<Long>> productIds,
+                                                             Set<Long> blockedProducts) {
+        Map<UpdateStock, UpdateStockSendResult> results = new IdentityHashMap<>();
+        for (UpdateStock updateStock : lane) {
+            Set<Long> products = productIds.get(updateStock);
+            if (products.stream().anyMatch(blockedProducts::contains)) {
+                blockedProducts.addAll(products);
+                continue;
+            }
+
+            UpdateStockSendResult result = productsStockClient.send(updateStock);
+            results.put(updateStock, result);
+            if (!result.sent()) {
+                blockedProducts.addAll(products);
+            }
+        }
+        return results;
+    }
+
+    private List<List<UpdateStock>> mergeLanes(List<List<UpdateStock>> lanes) {
+        List<List<UpdateStock>> tasks = new ArrayList<>();
+        List<UpdateStock> task = new ArrayList<>();
+        for (List<UpdateStock> lane : lanes) {
+            if (!task.isEmpty() && task.size() + lane.size() > BATCH_MAX_ROWS) {
+                tasks.add(task);
+                task = new ArrayList<>();
+            }
+            task.addAll(lane);
+        }
+        if (!task.isEmpty()) {
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    // a row sharing a product with one already in the envelope starts the next envelope
+    private Map<UpdateStock, UpdateStockSendResult> sendBatches(List<UpdateStock> task, Map<UpdateStock, Set<Long>> productIds,
+                                                                Set<Long> blockedProducts) {
+        Map<UpdateStock, UpdateStockSendResult> results = new IdentityHashMap<>();
+        int next = 0;
+        while (next < task.size()) {
+            List<UpdateStock> envelope = new ArrayList<>();
+            Set<Long> envelopeProducts = new HashSet<>();
+            int bytes = 0;
+            while (next < task.size() && envelope.size() < BATCH_MAX_ROWS) {
+                UpdateStock updateStock = task.get(next);
+                Set<Long> products = productIds.get(updateStock);
+                if (products.stream().anyMatch(blockedProducts::contains)) {
+                    blockedProducts.addAll(products);
+                    next++;
+                    continue;
+                }
+
+                int size = ProductsStockClient.entrySize(updateStock);
+                if (!envelope.isEmpty() && (bytes + size > BATCH_MAX_BYTES || products.stream().anyMatch(envelopeProducts::contains))) {
+                    break;
+                }
+                envelope.add(updateStock);
+                envelopeProducts.addAll(products);
+                bytes += size;
+                next++;
+            }
+
+            if (envelope.isEmpty()) {
+                continue;
+            }
+
+            List<UpdateStockSendResult> envelopeResults = productsStockClient.sendBatch(envelope);
+            for (int i = 0; i < envelope.size(); i++) {
+                results.put(envelope.get(i), envelopeResults.get(i));
+                if (!envelopeResults.get(i).sent()) {
+                    blockedProducts.addAll(productIds.get(envelope.get(i)));
+                }
+            }
+        }
+        return results;
+    }
+
+    private List<UpdateStockRequest> readRequests(UpdateStock updateStock) {
+        try {
+            return Arrays.asList(objectMapper.readValue(updateStock.getRequest(), UpdateStockRequest[].class));
+        } catch (JsonProcessingException e) {
+            log.warn("Could not read products of row {}: {}", updateStock.getId(), e.getMessage());
+            return null;
         }
     }
 }
@@ -0,0 +1,45 @@
+package com.frcalderon.commands.config;
+
+import com.frcalderon.commands.service.CommandInvalidationBus;
+import com.frcalderon.commands.service.InMemoryCommandInvalidationBus;
+import com.frcalderon.commands.service.PostgresCommandInvalidationBus;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import javax.sql.DataSource;
+
+class CommandInvalidationBusAutoConfigurationTests {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(CommandInvalidationBusAutoConfiguration.class));
+
+    @Test
+    public void CommandInvalidationBusAutoConfiguration_Bus_ReturnInMemoryBusByDefault() {
+        contextRunner.run(context -> Assertions.assertThat(context)
+                .getBean(CommandInvalidationBus.class)
+                .isInstanceOf(InMemoryCommandInvalidationBus.class));
+    }
+
+    @Test
+    public void CommandInvalidationBusAutoConfiguration_Bus_ReturnPostgresBusWhenConfigured() {
+        contextRunner.withPropertyValues("ms-commands.commands.cache.bus=postgres")
+                .withBean(DataSource.class, () -> Mockito.mock(DataSource.class))
+                .run(context -> Assertions.assertThat(context)
+                        .getBean(CommandInvalidationBus.class)
+                        .isInstanceOf(PostgresCommandInvalidationBus.class));
+    }
+
+    @Test
+    public void CommandInvalidationBusAutoConfiguration_Bus_ReturnOnlyTheApplicationBus() {
+        CommandInvalidationBus applicationBus = Mockito.mock(CommandInvalidationBus.class);
+
+        contextRunner.withPropertyValues("ms-commands.commands.cache.bus=postgres")
+                .withBean(CommandInvalidationBus.class, () -> applicationBus)
+                .run(context -> Assertions.assertThat(context)
+                        .getBean(CommandInvalidationBus.class)
+                        .isSameAs(applicationBus));
+    }
+}
@@ -0,0 +1,68 @@
+package com.frcalderon.commands.config;
+
+import com.frcalderon.commands.stub.ProductsStockStub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+class Http2ClientRequestFactoryTests {
+
+    private ProductsStockStub productsStockStub;
+
+    private RestTemplate restTemplate;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        productsStockStub = new ProductsStockStub();
+        restTemplate = new RestTemplate(new Http2ClientRequestFactory(
+                HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build(),
+                Duration.ofSeconds(5)
+        ));
+    }
+
+    @AfterEach
+    void tearDown() {
+        productsStockStub.close();
+    }
+
+    @Test
+    public void Http2ClientRequestFactory_Post_ReturnOk() {
+        ResponseEntity<String> response = restTemplate.postForEntity(
+                productsStockStub.getBaseUrl() + "stock/consume",
+                new HttpEntity<>("[{\"productId\":1,\"stock\":2}]", headers()),
+                String.class
+        );
+
+        Assertions.assertTrue(response.getStatusCode().is2xxSuccessful());
+        Assertions.assertEquals(1, productsStockStub.getSingleRequests().size());
+        Assertions.assertEquals("[{\"productId\":1,\"stock\":2}]", productsStockStub.getSingleRequests().get(0));
+    }
+
+    @Test
+    public void Http2ClientRequestFactory_Post_ReturnServerError() {
+        productsStockStub.failProduct(1L);
+
+        Assertions.assertThrows(HttpServerErrorException.class, () -> restTemplate.postForEntity(
+                productsStockStub.getBaseUrl() + "stock/consume",
+                new HttpEntity<>("[{\"productId\":1,\"stock\":2}]", headers()),
+                String.class
+        ));
+    }
+
+    private HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return headers;
+    }
+}
@@ -0,0 +1,69 @@
+package com.frcalderon.commands.config;
+
+import com.frcalderon.commands.controller.UpdateStockController;
+import com.frcalderon.commands.service.UpdateStockService;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+@WebMvcTest(controllers = UpdateStockController.class)
+@Import(SecurityConfiguration.class)
+@ActiveProfiles("prod")
+public class SecurityConfigurationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private UpdateStockService updateStockService;
+
+    @MockBean
+    private JwtDecoder jwtDecoder;
+
+    @Test
+    public void SecurityConfiguration_RequeueDeadUpdateStocks_ReturnForbiddenWithoutAdminRole() throws Exception {
+        mockMvc.perform(put("/update-stock/dead/requeue").with(jwt()))
+                .andExpect(MockMvcResultMatchers.status().isForbidden());
+        mockMvc.perform(get("/update-stock/dead").with(jwt()))
+                .andExpect(MockMvcResultMatchers.status().isForbidden());
+    }
+
+    @Test
+    public void SecurityConfiguration_RequeueDeadUpdateStocks_ReturnOkWithAdminRole() throws Exception {
+        when(updateStockService.requeueDeadUpdateStocks()).thenReturn(0);
+
+        mockMvc.perform(put("/update-stock/dead/requeue").with(jwt().authorities(new SimpleGrantedAuthority("ROLE_admin"))))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+
+    @Test
+    public void SecurityConfiguration_JwtAuthenticationConverter_ReturnRealmRolesAsAuthorities() {
+        Jwt token = Jwt.withTokenValue("token")
+                .header("alg", "none")
+                .claim("scope", "commands")
+                .claim("realm_access", Map.of("roles", List.of("admin")))
+                .build();
+
+        Assertions.assertThat(SecurityConfiguration.jwtAuthenticationConverter().convert(token).getAuthorities())
+                .extracting(GrantedAuthority::getAuthority)
+                .containsExactlyInAnyOrder("SCOPE_commands", "ROLE_admin");
+    }
+}
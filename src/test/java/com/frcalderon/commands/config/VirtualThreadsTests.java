@@ -0,0 +1,20 @@
+package com.frcalderon.commands.config;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadFactory;
+
+class VirtualThreadsTests {
+
+    @Test
+    public void VirtualThreads_Factory_ReturnNamedVirtualThreads() {
+        ThreadFactory threadFactory = VirtualThreads.factory("test-");
+
+        Thread thread = threadFactory.newThread(() -> {
+        });
+        Assertions.assertEquals("test-0", thread.getName());
+        Assertions.assertTrue(thread.isVirtual());
+        Assertions.assertTrue(thread.isDaemon());
+    }
+}
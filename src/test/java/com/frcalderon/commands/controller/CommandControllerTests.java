@@ -2,11 +2,27 @@ package com.frcalderon.commands.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.frcalderon.commands.controller.dto.CommandProductRequest;
+import com.frcalderon.commands.controller.dto.CommandProductResponse;
 import com.frcalderon.commands.controller.dto.CommandRequest;
 import com.frcalderon.commands.controller.dto.CommandResponse;
+import com.frcalderon.commands.controller.dto.CommandStatusRequest;
 import com.frcalderon.commands.model.Command;
 import com.frcalderon.commands.model.CommandProduct;
+import com.frcalderon.commands.model.CommandSort;
+import com.frcalderon.commands.model.CommandStatus;
+import com.frcalderon.commands.repository.CommandFilter;
+import com.frcalderon.commands.exceptions.CommandQueueFullException;
+import com.frcalderon.commands.exceptions.IdempotencyKeyLimitException;
+import com.frcalderon.commands.exceptions.IdempotencyKeyReusedException;
+import com.frcalderon.commands.exceptions.InvalidCommandBatchException;
+import com.frcalderon.commands.exceptions.StatusTransitionNotSupportedException;
+import com.frcalderon.commands.service.CommandBatchResult;
+import com.frcalderon.commands.service.AcceptedCommand;
+import com.frcalderon.commands.service.CommandPage;
 import com.frcalderon.commands.service.CommandService;
+import com.frcalderon.commands.service.CommandStatusResult;
+import com.frcalderon.commands.service.CommandWriteBehind;
+import com.frcalderon.commands.service.IdempotencyStore;
 import org.hamcrest.CoreMatchers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,16 +32,28 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 
@@ -40,6 +68,12 @@ public class CommandControllerTests {
     @MockBean
     private CommandService commandService;
 
+    @MockBean
+    private CommandWriteBehind commandWriteBehind;
+
+    @MockBean
+    private IdempotencyStore idempotencyStore;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -50,7 +84,10 @@ public class CommandControllerTests {
     private CommandResponse commandResponse;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
+        when(idempotencyStore.execute(any(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<IdempotencyStore.Call<?, ?>>getArgument(3).call());
+
         List<CommandProduct> products = Collections.singletonList(
                 CommandProduct.builder()
                         .productId(1L)
@@ -65,7 +102,7 @@ public class CommandControllerTests {
         command = Command.builder()
                 .id(1L)
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.TO_DO)
+                .status(CommandStatus.TO_DO)
                 .price(11.0)
                 .products(products)
                 .build();
@@ -87,33 +124,56 @@ public class CommandControllerTests {
         commandResponse = CommandResponse.builder()
                 .id(1L)
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.TO_DO)
+                .status(CommandStatus.TO_DO)
                 .price(11.0)
-                .products(products)
+                .products(products.stream().map(CommandProductResponse::new).toList())
                 .build();
     }
 
     @Test
-    public void CommandController_GetAllCommands_ReturnListOfCommandResponseAndOk() throws Exception {
-        List<Command> commandResponseList = Collections.singletonList(command);
+    public void CommandController_GetCommands_ReturnPageOfCommandResponseAndOk() throws Exception {
+        List<CommandResponse> commandResponseList = Collections.singletonList(commandResponse);
 
-        when(commandService.getAllCommands()).thenReturn(commandResponseList);
+        CommandFilter filter = new CommandFilter(List.of(CommandStatus.TO_DO, CommandStatus.IN_PROGRESS),
+                LocalDate.of(2023, 6, 15), LocalDate.of(2023, 6, 16), 7L);
+        when(commandService.getCommands(filter, CommandSort.DELIVERY_DATE, "cursor", 10))
+                .thenReturn(new CommandPage(commandResponseList, "next"));
 
         ResultActions response = mockMvc.perform(get("/commands")
+                .param("status", "TO DO", "in_progress")
+                .param("deliveryFrom", "15-06-2023")
+                .param("deliveryTo", "16-06-2023")
+                .param("productId", "7")
+                .param("sort", "deliveryDate")
+                .param("cursor", "cursor")
+                .param("limit", "10")
                 .contentType(MediaType.APPLICATION_JSON)
         );
 
         response.andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.jsonPath(
-                        "$.size()",
+                        "$.commands.size()",
                         CoreMatchers.is(commandResponseList.size())
-                ));
+                ))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.nextCursor", CoreMatchers.is("next")));
+    }
+
+    @Test
+    public void CommandController_GetCommands_ReturnBadRequestForUnknownSort() throws Exception {
+        mockMvc.perform(get("/commands").param("sort", "price"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void CommandController_GetCommands_ReturnBadRequestForUnknownStatus() throws Exception {
+        mockMvc.perform(get("/commands").param("status", "EATEN"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
     }
 
     @Test
     public void CommandController_GetCommand_ReturnCommandResponseAndOk() throws Exception {
         Long commandId = 1L;
-        when(commandService.getCommand(commandId)).thenReturn(command);
+        when(commandService.getCommand(commandId)).thenReturn(commandResponse);
 
         ResultActions response = mockMvc.perform(get("/commands/1")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -130,7 +190,7 @@ public class CommandControllerTests {
                 ))
                 .andExpect(MockMvcResultMatchers.jsonPath(
                         "$.status",
-                        CoreMatchers.is(commandResponse.getStatus())
+                        CoreMatchers.is(commandResponse.getStatus().getLabel())
                 ))
                 .andExpect(MockMvcResultMatchers.jsonPath(
                         "$.price",
@@ -139,6 +199,10 @@ public class CommandControllerTests {
                 .andExpect(MockMvcResultMatchers.jsonPath(
                         "$.products.size()",
                         CoreMatchers.is(commandResponse.getProducts().size())
+                ))
+                .andExpect(MockMvcResultMatchers.jsonPath(
+                        "$.products[0].productName",
+                        CoreMatchers.is("Lotus Cheesecake")
                 ));
     }
 
@@ -162,7 +226,7 @@ public class CommandControllerTests {
                 ))
                 .andExpect(MockMvcResultMatchers.jsonPath(
                         "$.status",
-                        CoreMatchers.is(commandResponse.getStatus())
+                        CoreMatchers.is(commandResponse.getStatus().getLabel())
                 ))
                 .andExpect(MockMvcResultMatchers.jsonPath(
                         "$.price",
@@ -174,6 +238,19 @@ public class CommandControllerTests {
                 ));
     }
 
+    @Test
+    public void CommandController_CreateCommand_ReturnBadRequestForNonPositiveQuantity() throws Exception {
+        commandRequest.getCommandProductList().get(0).setQuantity(-2);
+
+        ResultActions response = mockMvc.perform(post("/commands")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(commandRequest))
+        );
+
+        response.andExpect(MockMvcResultMatchers.status().isBadRequest());
+        verify(commandService, never()).createCommand(any());
+    }
+
     @Test
     public void CommandController_UpdateCommand_ReturnCommandResponseAndOk() throws Exception {
         Long commandId = 1L;
@@ -195,7 +272,7 @@ public class CommandControllerTests {
                 ))
                 .andExpect(MockMvcResultMatchers.jsonPath(
                         "$.status",
-                        CoreMatchers.is(commandResponse.getStatus())
+                        CoreMatchers.is(commandResponse.getStatus().getLabel())
                 ))
                 .andExpect(MockMvcResultMatchers.jsonPath(
                         "$.price",
@@ -225,11 +302,11 @@ public class CommandControllerTests {
         Command commandToDo = Command.builder()
                 .id(1L)
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.TO_DO)
+                .status(CommandStatus.TO_DO)
                 .price(11.0)
                 .build();
 
-        when(commandService.commandToDo(commandId)).thenReturn(commandToDo);
+        when(commandService.changeStatus(commandId, CommandStatus.TO_DO)).thenReturn(new CommandResponse(commandToDo));
 
         ResultActions response = mockMvc.perform(put("/commands/todo/1")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -238,7 +315,7 @@ public class CommandControllerTests {
         response.andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.jsonPath(
                         "$.status",
-                        CoreMatchers.is(Command.TO_DO)
+                        CoreMatchers.is(CommandStatus.TO_DO.getLabel())
                 ));
     }
 
@@ -248,11 +325,11 @@ public class CommandControllerTests {
         Command commandInProgress = Command.builder()
                 .id(1L)
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.IN_PROGRESS)
+                .status(CommandStatus.IN_PROGRESS)
                 .price(11.0)
                 .build();
 
-        when(commandService.commandInProgress(commandId)).thenReturn(commandInProgress);
+        when(commandService.changeStatus(commandId, CommandStatus.IN_PROGRESS)).thenReturn(new CommandResponse(commandInProgress));
 
         ResultActions response = mockMvc.perform(put("/commands/inprogress/1")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -261,7 +338,7 @@ public class CommandControllerTests {
         response.andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.jsonPath(
                         "$.status",
-                        CoreMatchers.is(Command.IN_PROGRESS)
+                        CoreMatchers.is(CommandStatus.IN_PROGRESS.getLabel())
                 ));
     }
 
@@ -271,11 +348,11 @@ public class CommandControllerTests {
         Command commandPrepared = Command.builder()
                 .id(1L)
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.PREPARED)
+                .status(CommandStatus.PREPARED)
                 .price(11.0)
                 .build();
 
-        when(commandService.commandPrepared(commandId)).thenReturn(commandPrepared);
+        when(commandService.changeStatus(commandId, CommandStatus.PREPARED)).thenReturn(new CommandResponse(commandPrepared));
 
         ResultActions response = mockMvc.perform(put("/commands/prepared/1")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -284,7 +361,7 @@ public class CommandControllerTests {
         response.andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.jsonPath(
                         "$.status",
-                        CoreMatchers.is(Command.PREPARED)
+                        CoreMatchers.is(CommandStatus.PREPARED.getLabel())
                 ));
     }
 
@@ -294,11 +371,11 @@ public class CommandControllerTests {
         Command commandDelivered = Command.builder()
                 .id(1L)
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.DELIVERED)
+                .status(CommandStatus.DELIVERED)
                 .price(11.0)
                 .build();
 
-        when(commandService.commandDelivered(commandId)).thenReturn(commandDelivered);
+        when(commandService.changeStatus(commandId, CommandStatus.DELIVERED)).thenReturn(new CommandResponse(commandDelivered));
 
         ResultActions response = mockMvc.perform(put("/commands/delivered/1")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -307,7 +384,7 @@ public class CommandControllerTests {
         response.andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.jsonPath(
                         "$.status",
-                        CoreMatchers.is(Command.DELIVERED)
+                        CoreMatchers.is(CommandStatus.DELIVERED.getLabel())
                 ));
     }
 
@@ -317,11 +394,11 @@ public class CommandControllerTests {
         Command commandCancelled = Command.builder()
                 .id(1L)
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.CANCELLED)
+                .status(CommandStatus.CANCELLED)
                 .price(11.0)
                 .build();
 
-        when(commandService.commandCancelled(commandId)).thenReturn(commandCancelled);
+        when(commandService.changeStatus(commandId, CommandStatus.CANCELLED)).thenReturn(new CommandResponse(commandCancelled));
 
         ResultActions response = mockMvc.perform(put("/commands/cancelled/1")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -330,7 +407,231 @@ public class CommandControllerTests {
         response.andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.jsonPath(
                         "$.status",
-                        CoreMatchers.is(Command.CANCELLED)
+                        CoreMatchers.is(CommandStatus.CANCELLED.getLabel())
                 ));
     }
+
+    @Test
+    public void CommandController_ChangeStatus_ReturnCommandResponseAndOk() throws Exception {
+        Long commandId = 1L;
+        Command commandPrepared = Command.builder()
+                .id(1L)
+                .deliveryDate(LocalDate.now().plusDays(5))
+                .status(CommandStatus.PREPARED)
+                .price(11.0)
+                .build();
+
+        when(commandService.changeStatus(commandId, CommandStatus.PREPARED)).thenReturn(new CommandResponse(commandPrepared));
+
+        ResultActions response = mockMvc.perform(put("/commands/1/status")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"PREPARED\"}")
+        );
+
+        response.andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath(
+                        "$.status",
+                        CoreMatchers.is(CommandStatus.PREPARED.getLabel())
+                ));
+    }
+
+    @Test
+    public void CommandController_ChangeStatus_ReturnBadRequestForUnknownStatus() throws Exception {
+        ResultActions response = mockMvc.perform(put("/commands/1/status")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"EATEN\"}")
+        );
+
+        response.andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void CommandController_CreateCommands_ReturnResultsAndOk() throws Exception {
+        when(commandService.createCommands(any())).thenReturn(List.of(
+                CommandBatchResult.created(0, 1L),
+                CommandBatchResult.rejected(1, "commandProductList must not be null")
+        ));
+
+        ResultActions response = mockMvc.perform(post("/commands/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(commandRequest, commandRequest)))
+        );
+
+        response.andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.created", CoreMatchers.is(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.rejected", CoreMatchers.is(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.results[0].id", CoreMatchers.is(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.results[1].error", CoreMatchers.is("commandProductList must not be null")));
+    }
+
+    @Test
+    public void CommandController_CreateCommands_ReturnBadRequest() throws Exception {
+        when(commandService.createCommands(any())).thenThrow(new InvalidCommandBatchException());
+
+        ResultActions response = mockMvc.perform(post("/commands/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(commandRequest))
+        );
+
+        response.andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void CommandController_ChangeStatus_ReturnMovedAndRejectedAndOk() throws Exception {
+        when(commandService.changeStatuses(List.of(1L, 2L), CommandStatus.IN_PROGRESS))
+                .thenReturn(new CommandStatusResult(List.of(1L), List.of(2L)));
+
+        ResultActions response = mockMvc.perform(put("/commands/status")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(CommandStatusRequest.builder()
+                        .ids(List.of(1L, 2L))
+                        .status(CommandStatus.IN_PROGRESS)
+                        .build()))
+        );
+
+        response.andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.status", CoreMatchers.is(CommandStatus.IN_PROGRESS.getLabel())))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.moved[0]", CoreMatchers.is(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.rejected[0]", CoreMatchers.is(2)));
+    }
+
+    @Test
+    public void CommandController_ChangeStatus_ReturnBadRequest() throws Exception {
+        when(commandService.changeStatuses(List.of(1L), CommandStatus.CANCELLED))
+                .thenThrow(new StatusTransitionNotSupportedException());
+
+        ResultActions response = mockMvc.perform(put("/commands/status")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(CommandStatusRequest.builder()
+                        .ids(List.of(1L))
+                        .status(CommandStatus.CANCELLED)
+                        .build()))
+        );
+
+        response.andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void CommandController_CreateCommand_ReturnStoredResponseForRepeatedIdempotencyKey() throws Exception {
+        doReturn(commandResponse).when(idempotencyStore)
+                .execute(eq("create-once"), eq(List.of("POST /commands", commandRequest)), eq(CommandResponse.class), any());
+
+        mockMvc.perform(post("/commands")
+                        .header(IdempotencyStore.HEADER, "create-once")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(commandRequest)))
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id", CoreMatchers.is(commandResponse.getId().intValue())));
+
+        verify(commandService, times(0)).createCommand(any());
+    }
+
+    @Test
+    public void CommandController_ChangeStatus_ReturnSameFingerprintThroughAlias() throws Exception {
+        command.setStatus(CommandStatus.CANCELLED);
+        when(commandService.changeStatus(1L, CommandStatus.CANCELLED)).thenReturn(new CommandResponse(command));
+
+        mockMvc.perform(put("/commands/cancelled/1").header(IdempotencyStore.HEADER, "cancel-once"))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+        mockMvc.perform(put("/commands/1/status")
+                        .header(IdempotencyStore.HEADER, "cancel-once")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"status\":\"CANCELLED\"}"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.status", CoreMatchers.is(CommandStatus.CANCELLED.getLabel())));
+
+        verify(idempotencyStore, times(2)).execute(eq("cancel-once"), eq(List.of("PUT /commands/{id}/status", 1L, CommandStatus.CANCELLED)),
+                eq(CommandResponse.class), any());
+    }
+
+    @Test
+    public void CommandController_ChangeStatus_ReturnUnprocessableEntityForReusedIdempotencyKey() throws Exception {
+        doThrow(new IdempotencyKeyReusedException()).when(idempotencyStore).execute(eq("reused"), any(), any(), any());
+
+        mockMvc.perform(put("/commands/delivered/1").header(IdempotencyStore.HEADER, "reused"))
+                .andExpect(MockMvcResultMatchers.status().isUnprocessableEntity());
+
+        verify(commandService, times(0)).changeStatus(1L, CommandStatus.DELIVERED);
+    }
+
+    @Test
+    public void CommandController_ChangeStatus_ReturnTooManyRequestsOverIdempotencyKeyLimit() throws Exception {
+        doThrow(new IdempotencyKeyLimitException()).when(idempotencyStore).execute(eq("one-too-many"), any(), any(), any());
+
+        mockMvc.perform(put("/commands/delivered/1").header(IdempotencyStore.HEADER, "one-too-many"))
+                .andExpect(MockMvcResultMatchers.status().isTooManyRequests());
+
+        verify(commandService, times(0)).changeStatus(1L, CommandStatus.DELIVERED);
+    }
+
+    @Test
+    public void CommandController_CreateCommand_ReturnTrackingIdAndAcceptedWhenAsync() throws Exception {
+        UUID trackingId = UUID.randomUUID();
+        when(commandWriteBehind.isEnabled()).thenReturn(true);
+        when(commandWriteBehind.accept(commandRequest)).thenReturn(AcceptedCommand.queued(trackingId));
+
+        ResultActions response = mockMvc.perform(post("/commands")
+                .header("Prefer", "respond-async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(commandRequest))
+        );
+
+        response.andExpect(MockMvcResultMatchers.status().isAccepted())
+                .andExpect(MockMvcResultMatchers.header().string("Location", "/commands/accepted/" + trackingId))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.trackingId", CoreMatchers.is(trackingId.toString())))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.state", CoreMatchers.is("QUEUED")));
+
+        verify(commandService, times(0)).createCommand(any());
+    }
+
+    @Test
+    public void CommandController_CreateCommand_ReturnCreatedWhenAsyncIsDisabled() throws Exception {
+        when(commandService.createCommand(commandRequest)).thenReturn(command);
+
+        mockMvc.perform(post("/commands")
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(commandRequest)))
+                .andExpect(MockMvcResultMatchers.status().isCreated());
+
+        verify(commandWriteBehind, times(0)).accept(any());
+    }
+
+    @Test
+    public void CommandController_GetAcceptedCommand_ReturnStateAndOk() throws Exception {
+        UUID trackingId = UUID.randomUUID();
+        when(commandWriteBehind.getAccepted(trackingId)).thenReturn(AcceptedCommand.created(trackingId, 1L));
+
+        mockMvc.perform(get("/commands/accepted/" + trackingId))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.state", CoreMatchers.is("CREATED")))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.commandId", CoreMatchers.is(1)));
+    }
+
+    @Test
+    public void CommandController_CreateCommand_ReturnServiceUnavailableWhenQueueIsFull() throws Exception {
+        when(commandWriteBehind.isEnabled()).thenReturn(true);
+        when(commandWriteBehind.accept(commandRequest)).thenThrow(new CommandQueueFullException());
+
+        mockMvc.perform(post("/commands")
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(commandRequest)))
+                .andExpect(MockMvcResultMatchers.status().isServiceUnavailable())
+                .andExpect(MockMvcResultMatchers.header().string("Retry-After", "1"));
+    }
+
+    @Test
+    public void CommandController_ExportCommands_ReturnNdjsonAndOk() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(0);
+            out.write("{\"id\":1}\n{\"id\":2}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(commandService).exportCommands(any(OutputStream.class));
+
+        mockMvc.perform(get("/commands/export"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(MockMvcResultMatchers.content().string("{\"id\":1}\n{\"id\":2}\n"));
+    }
 }
@@ -0,0 +1,94 @@
+package com.frcalderon.commands.controller;
+
+import com.frcalderon.commands.exceptions.UpdateStockNotFoundException;
+import com.frcalderon.commands.model.UpdateStock;
+import com.frcalderon.commands.service.UpdateStockService;
+import org.hamcrest.CoreMatchers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.util.Collections;
+
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+@WebMvcTest(controllers = UpdateStockController.class)
+@AutoConfigureMockMvc(addFilters = false)
+@ExtendWith(MockitoExtension.class)
+public class UpdateStockControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private UpdateStockService updateStockService;
+
+    @Test
+    public void UpdateStockController_GetDeadUpdateStocks_ReturnListOfUpdateStockResponseAndOk() throws Exception {
+        UpdateStock updateStock = UpdateStock.builder()
+                .id(1L)
+                .request("this is a request")
+                .uri("this is a uri")
+                .attempts(10)
+                .lastError("this is an error")
+                .dead(true)
+                .build();
+
+        when(updateStockService.getDeadUpdateStocks()).thenReturn(Collections.singletonList(updateStock));
+
+        ResultActions response = mockMvc.perform(get("/update-stock/dead")
+                .contentType(MediaType.APPLICATION_JSON)
+        );
+
+        response.andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.size()", CoreMatchers.is(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].lastError", CoreMatchers.is("this is an error")))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].dead").doesNotExist());
+    }
+
+    @Test
+    public void UpdateStockController_RequeueDeadUpdateStocks_ReturnRequeuedAndOk() throws Exception {
+        when(updateStockService.requeueDeadUpdateStocks()).thenReturn(3);
+
+        ResultActions response = mockMvc.perform(put("/update-stock/dead/requeue")
+                .contentType(MediaType.APPLICATION_JSON)
+        );
+
+        response.andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.requeued", CoreMatchers.is(3)));
+    }
+
+    @Test
+    public void UpdateStockController_RequeueDeadUpdateStock_ReturnNoContent() throws Exception {
+        doNothing().when(updateStockService).requeueDeadUpdateStock(1L);
+
+        ResultActions response = mockMvc.perform(put("/update-stock/dead/1/requeue")
+                .contentType(MediaType.APPLICATION_JSON)
+        );
+
+        response.andExpect(MockMvcResultMatchers.status().isNoContent());
+    }
+
+    @Test
+    public void UpdateStockController_RequeueDeadUpdateStock_ReturnNotFound() throws Exception {
+        doThrow(new UpdateStockNotFoundException()).when(updateStockService).requeueDeadUpdateStock(2L);
+
+        ResultActions response = mockMvc.perform(put("/update-stock/dead/2/requeue")
+                .contentType(MediaType.APPLICATION_JSON)
+        );
+
+        response.andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+}
@@ -2,6 +2,7 @@ package com.frcalderon.commands.repository;
 
 import com.frcalderon.commands.model.Command;
 import com.frcalderon.commands.model.CommandProduct;
+import com.frcalderon.commands.model.CommandStatus;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,7 +27,7 @@ public class CommandProductRepositoryTests {
     public void ProductIngredientRepository_Save_ReturnSavedProductIngredient() {
         Command command = Command.builder()
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.TO_DO)
+                .status(CommandStatus.TO_DO)
                 .price(10.5)
                 .build();
 
@@ -52,7 +53,7 @@ public class CommandProductRepositoryTests {
     public void CommandProductRepository_Delete_ReturnCommandProductIsEmpty_CommandIsNotRemoved() {
         Command command = Command.builder()
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.TO_DO)
+                .status(CommandStatus.TO_DO)
                 .price(10.5)
                 .build();
 
@@ -87,7 +88,7 @@ public class CommandProductRepositoryTests {
     public void CommandProductRepository_DeleteByCommand_ReturnCommandProductIsEmpty_CommandIsNotRemoved() {
         Command command = Command.builder()
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.TO_DO)
+                .status(CommandStatus.TO_DO)
                 .price(10.5)
                 .build();
 
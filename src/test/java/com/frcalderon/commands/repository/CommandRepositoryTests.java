@@ -1,6 +1,9 @@
 package com.frcalderon.commands.repository;
 
 import com.frcalderon.commands.model.Command;
+import com.frcalderon.commands.model.CommandProduct;
+import com.frcalderon.commands.model.CommandSort;
+import com.frcalderon.commands.model.CommandStatus;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,17 +22,20 @@ public class CommandRepositoryTests {
     @Autowired
     private CommandRepository commandRepository;
 
+    @Autowired
+    private CommandProductRepository commandProductRepository;
+
     @Test
     public void CommandRepository_GetAll_ReturnMoreThanOneCommand() {
         Command command1 = Command.builder()
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.TO_DO)
+                .status(CommandStatus.TO_DO)
                 .price(10.5)
                 .build();
 
         Command command2 = Command.builder()
                 .deliveryDate(LocalDate.now().plusDays(10))
-                .status(Command.CANCELLED)
+                .status(CommandStatus.CANCELLED)
                 .price(20.5)
                 .build();
 
@@ -46,7 +52,7 @@ public class CommandRepositoryTests {
     public void CommandRepository_FindById_ReturnCommand() {
         Command command = Command.builder()
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.TO_DO)
+                .status(CommandStatus.TO_DO)
                 .price(10.5)
                 .build();
 
@@ -61,7 +67,7 @@ public class CommandRepositoryTests {
     public void CommandRepository_Save_ReturnSavedCommand() {
         Command command = Command.builder()
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.TO_DO)
+                .status(CommandStatus.TO_DO)
                 .price(10.5)
                 .build();
 
@@ -75,7 +81,7 @@ public class CommandRepositoryTests {
     public void CommandRepository_Update_ReturnCommandNotNull() {
         Command command = Command.builder()
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.TO_DO)
+                .status(CommandStatus.TO_DO)
                 .price(10.5)
                 .build();
 
@@ -83,7 +89,7 @@ public class CommandRepositoryTests {
 
         Command savedCommand = commandRepository.findById(command.getId()).get();
         savedCommand.setDeliveryDate(LocalDate.now().plusDays(10));
-        savedCommand.setStatus(Command.CANCELLED);
+        savedCommand.setStatus(CommandStatus.CANCELLED);
         savedCommand.setPrice(20.75);
 
         Command updatedCommand = commandRepository.save(savedCommand);
@@ -97,7 +103,7 @@ public class CommandRepositoryTests {
     public void CommandRepository_Delete_ReturnCommandIsEmpty() {
         Command command = Command.builder()
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.TO_DO)
+                .status(CommandStatus.TO_DO)
                 .price(10.5)
                 .build();
 
@@ -109,4 +115,99 @@ public class CommandRepositoryTests {
 
         Assertions.assertThat(deletedCommand).isEmpty();
     }
+
+    @Test
+    public void CommandRepository_UpdateStatus_ReturnOnlyLockedCommandsMoved() {
+        Command command1 = commandRepository.save(Command.builder()
+                .deliveryDate(LocalDate.now().plusDays(5))
+                .status(CommandStatus.TO_DO)
+                .price(10.5)
+                .build());
+
+        Command command2 = commandRepository.save(Command.builder()
+                .deliveryDate(LocalDate.now().plusDays(5))
+                .status(CommandStatus.CANCELLED)
+                .price(10.5)
+                .build());
+
+        List<Long> movable = commandRepository.lockIdsInStatus(List.of(command1.getId(), command2.getId(), -1L), List.of(CommandStatus.TO_DO));
+        int updated = commandRepository.updateStatus(movable, CommandStatus.IN_PROGRESS);
+
+        Assertions.assertThat(movable).containsExactly(command1.getId());
+        Assertions.assertThat(updated).isEqualTo(1);
+        Assertions.assertThat(commandRepository.findById(command1.getId()).get().getStatus()).isEqualTo(CommandStatus.IN_PROGRESS);
+        Assertions.assertThat(commandRepository.findById(command2.getId()).get().getStatus()).isEqualTo(CommandStatus.CANCELLED);
+    }
+
+    @Test
+    public void CommandRepository_Transition_ReturnLinesOnlyWhenAppliedFromExpectedStatus() {
+        Command command = commandRepository.save(Command.builder()
+                .deliveryDate(LocalDate.now().plusDays(5))
+                .status(CommandStatus.TO_DO)
+                .price(10.5)
+                .build());
+        commandProductRepository.save(CommandProduct.builder()
+                .command(command)
+                .productId(1L)
+                .productName("Lotus Cheesecake")
+                .quantity(2)
+                .unitPrice(5.25)
+                .totalPrice(10.5)
+                .build());
+        commandProductRepository.flush();
+
+        List<CommandLineRow> rows = commandRepository.transition(command.getId(), List.of(CommandStatus.TO_DO), CommandStatus.IN_PROGRESS);
+
+        Assertions.assertThat(rows).hasSize(1);
+        Assertions.assertThat(rows.get(0).commandId()).isEqualTo(command.getId());
+        Assertions.assertThat(rows.get(0).status()).isEqualTo(CommandStatus.IN_PROGRESS);
+        Assertions.assertThat(rows.get(0).deliveryDate()).isEqualTo(command.getDeliveryDate());
+        Assertions.assertThat(rows.get(0).productId()).isEqualTo(1L);
+        Assertions.assertThat(rows.get(0).quantity()).isEqualTo(2);
+        Assertions.assertThat(commandRepository.transition(command.getId(), List.of(CommandStatus.TO_DO), CommandStatus.IN_PROGRESS)).isEmpty();
+        Assertions.assertThat(commandRepository.findById(command.getId()).get().getStatus()).isEqualTo(CommandStatus.IN_PROGRESS);
+    }
+
+    @Test
+    public void CommandRepository_FindPageIds_ReturnIdsAfterDeliveryDateCursor() {
+        LocalDate today = LocalDate.now();
+        Command first = commandRepository.save(Command.builder().deliveryDate(today.plusDays(2)).status(CommandStatus.TO_DO).price(1.0).build());
+        Command second = commandRepository.save(Command.builder().deliveryDate(today.plusDays(1)).status(CommandStatus.TO_DO).price(1.0).build());
+        Command third = commandRepository.save(Command.builder().deliveryDate(today.plusDays(1)).status(CommandStatus.TO_DO).price(1.0).build());
+
+        List<Long> firstPage = commandRepository.findPageIds(CommandFilter.none(), CommandSort.DELIVERY_DATE, null, null, 2);
+        List<Long> nextPage = commandRepository.findPageIds(CommandFilter.none(), CommandSort.DELIVERY_DATE, third.getDeliveryDate(), third.getId(), 2);
+
+        Assertions.assertThat(firstPage).containsExactly(second.getId(), third.getId());
+        Assertions.assertThat(nextPage).containsExactly(first.getId());
+    }
+
+    @Test
+    public void CommandRepository_FindPageIds_ReturnIdsAfterIdCursor() {
+        Command first = commandRepository.save(Command.builder().deliveryDate(LocalDate.now()).status(CommandStatus.TO_DO).price(1.0).build());
+        Command second = commandRepository.save(Command.builder().deliveryDate(LocalDate.now()).status(CommandStatus.TO_DO).price(1.0).build());
+
+        Assertions.assertThat(commandRepository.findPageIds(CommandFilter.none(), CommandSort.ID, null, null, 1)).containsExactly(first.getId());
+        Assertions.assertThat(commandRepository.findPageIds(CommandFilter.none(), CommandSort.ID, null, first.getId(), 1)).containsExactly(second.getId());
+    }
+
+    @Test
+    public void CommandRepository_FindPageIds_ReturnIdsMatchingFilter() {
+        LocalDate today = LocalDate.now();
+        Command toDo = commandRepository.save(Command.builder().deliveryDate(today).status(CommandStatus.TO_DO).price(1.0).build());
+        Command inProgress = commandRepository.save(Command.builder().deliveryDate(today.plusDays(1)).status(CommandStatus.IN_PROGRESS).price(1.0).build());
+        Command delivered = commandRepository.save(Command.builder().deliveryDate(today.plusDays(1)).status(CommandStatus.DELIVERED).price(1.0).build());
+        Command later = commandRepository.save(Command.builder().deliveryDate(today.plusDays(5)).status(CommandStatus.TO_DO).price(1.0).build());
+        commandProductRepository.save(CommandProduct.builder().command(inProgress).productId(7L).productName("Lotus Cheesecake")
+                .quantity(1).unitPrice(1.0).totalPrice(1.0).build());
+
+        CommandFilter kitchen = new CommandFilter(List.of(CommandStatus.TO_DO, CommandStatus.IN_PROGRESS), today, today.plusDays(1), null);
+        CommandFilter product = new CommandFilter(null, null, null, 7L);
+
+        Assertions.assertThat(commandRepository.findPageIds(kitchen, CommandSort.DELIVERY_DATE, null, null, 10))
+                .containsExactly(toDo.getId(), inProgress.getId())
+                .doesNotContain(delivered.getId(), later.getId());
+        Assertions.assertThat(commandRepository.findPageIds(product, CommandSort.ID, null, null, 10))
+                .containsExactly(inProgress.getId());
+    }
 }
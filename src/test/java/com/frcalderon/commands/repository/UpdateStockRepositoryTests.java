@@ -7,7 +7,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 
+import java.time.Instant;
 import java.util.List;
 
 @DataJpaTest
@@ -17,6 +20,9 @@ public class UpdateStockRepositoryTests {
     @Autowired
     private UpdateStockRepository updateStockRepository;
 
+    @Autowired
+    private TestEntityManager entityManager;
+
     @Test
     public void UpdateStockRepository_FindById_ReturnUpdateStock() {
         UpdateStock updateStock = UpdateStock.builder()
@@ -105,4 +111,197 @@ public class UpdateStockRepositoryTests {
         Assertions.assertThat(updateStockList).isNotNull();
         Assertions.assertThat(updateStockList.size()).isEqualTo(2);
     }
+
+    @Test
+    public void UpdateStockRepository_FindClaimable_ReturnUnsentUnclaimedPageOrderedById() {
+        Instant now = Instant.now();
+
+        UpdateStock updateStock1 = updateStockRepository.save(UpdateStock.builder()
+                .request("this is a request")
+                .uri("this is a uri")
+                .sent(false)
+                .build());
+
+        UpdateStock updateStock2 = updateStockRepository.save(UpdateStock.builder()
+                .request("this is a request")
+                .uri("this is a uri")
+                .sent(true)
+                .build());
+
+        UpdateStock updateStock3 = updateStockRepository.save(UpdateStock.builder()
+                .request("this is a request")
+                .uri("this is a uri")
+                .sent(false)
+                .claimOwner("other-pod")
+                .claimedUntil(now.plusSeconds(60))
+                .build());
+
+        UpdateStock updateStock4 = updateStockRepository.save(UpdateStock.builder()
+                .request("this is a request")
+                .uri("this is a uri")
+                .sent(false)
+                .claimOwner("crashed-pod")
+                .claimedUntil(now.minusSeconds(60))
+                .build());
+
+        UpdateStock updateStock5 = updateStockRepository.save(UpdateStock.builder()
+                .request("this is a request")
+                .uri("this is a uri")
+                .sent(false)
+                .build());
+
+        List<UpdateStock> firstPage = updateStockRepository.findClaimable(1L, updateStock5.getId(), now, PageRequest.ofSize(2));
+
+        Assertions.assertThat(firstPage).containsExactly(updateStock1, updateStock4);
+
+        List<UpdateStock> secondPage = updateStockRepository.findClaimable(updateStock4.getId() + 1, updateStock5.getId(), now, PageRequest.ofSize(2));
+
+        Assertions.assertThat(secondPage).containsExactly(updateStock5);
+        Assertions.assertThat(secondPage).doesNotContain(updateStock2, updateStock3);
+    }
+
+    @Test
+    public void UpdateStockRepository_ClaimAndRelease_ReturnClaimOwnedOnlyWhileLeased() {
+        Instant now = Instant.now();
+
+        UpdateStock updateStock = updateStockRepository.save(UpdateStock.builder()
+                .request("this is a request")
+                .uri("this is a uri")
+                .sent(false)
+                .build());
+
+        entityManager.flush();
+
+        updateStockRepository.claim(List.of(updateStock.getId()), "pod-1", now.plusSeconds(60));
+        entityManager.clear();
+
+        Assertions.assertThat(updateStockRepository.findClaimable(1L, updateStock.getId(), now, PageRequest.ofSize(10))).isEmpty();
+        Assertions.assertThat(updateStockRepository.release(List.of(updateStock.getId()), "pod-2")).isEqualTo(0);
+        Assertions.assertThat(updateStockRepository.release(List.of(updateStock.getId()), "pod-1")).isEqualTo(1);
+        entityManager.clear();
+
+        Assertions.assertThat(updateStockRepository.findClaimable(1L, updateStock.getId(), now, PageRequest.ofSize(10))).hasSize(1);
+    }
+
+    @Test
+    public void UpdateStockRepository_MarkSent_ReturnUpdatedRows() {
+        UpdateStock updateStock1 = updateStockRepository.save(UpdateStock.builder()
+                .request("this is a request")
+                .uri("this is a uri")
+                .sent(false)
+                .build());
+
+        UpdateStock updateStock2 = updateStockRepository.save(UpdateStock.builder()
+                .request("this is a request")
+                .uri("this is a uri")
+                .sent(false)
+                .build());
+
+        entityManager.flush();
+
+        int updated = updateStockRepository.markSent(List.of(updateStock1.getId()), Instant.now());
+        entityManager.clear();
+
+        Assertions.assertThat(updated).isEqualTo(1);
+        Assertions.assertThat(updateStockRepository.findById(updateStock1.getId()).get().isSent()).isTrue();
+        Assertions.assertThat(updateStockRepository.findById(updateStock2.getId()).get().isSent()).isFalse();
+    }
+
+    @Test
+    public void UpdateStockRepository_FindClaimable_ReturnOnlyDueRowsThatAreNotDead() {
+        Instant now = Instant.now();
+
+        UpdateStock updateStock1 = updateStockRepository.save(UpdateStock.builder()
+                .request("this is a request")
+                .uri("this is a uri")
+                .sent(false)
+                .attempts(1)
+                .nextAttemptAt(now.minusSeconds(60))
+                .build());
+
+        updateStockRepository.save(UpdateStock.builder()
+                .request("this is a request")
+                .uri("this is a uri")
+                .sent(false)
+                .attempts(1)
+                .nextAttemptAt(now.plusSeconds(60))
+                .build());
+
+        UpdateStock updateStock3 = updateStockRepository.save(UpdateStock.builder()
+                .request("this is a request")
+                .uri("this is a uri")
+                .sent(false)
+                .attempts(10)
+                .dead(true)
+                .build());
+
+        List<UpdateStock> page = updateStockRepository.findClaimable(1L, updateStock3.getId(), now, PageRequest.ofSize(10));
+
+        Assertions.assertThat(page).containsExactly(updateStock1);
+    }
+
+    @Test
+    public void UpdateStockRepository_FindLeasedByOthers_ReturnRowsLeasedByAnotherReplica() {
+        Instant now = Instant.now();
+
+        updateStockRepository.save(UpdateStock.builder()
+                .request("this is a request")
+                .uri("this is a uri")
+                .sent(false)
+                .build());
+
+        UpdateStock leased = updateStockRepository.save(UpdateStock.builder()
+                .request("this is a request")
+                .uri("this is a uri")
+                .sent(false)
+                .claimOwner("replica-b")
+                .claimedUntil(now.plusSeconds(60))
+                .build());
+
+        updateStockRepository.save(UpdateStock.builder()
+                .request("this is a request")
+                .uri("this is a uri")
+                .sent(false)
+                .claimOwner("replica-b")
+                .claimedUntil(now.minusSeconds(60))
+                .build());
+
+        updateStockRepository.save(UpdateStock.builder()
+                .request("this is a request")
+                .uri("this is a uri")
+                .sent(false)
+                .claimOwner("replica-a")
+                .claimedUntil(now.plusSeconds(60))
+                .build());
+
+        Assertions.assertThat(updateStockRepository.findLeasedByOthers(now, "replica-a", PageRequest.ofSize(10)))
+                .containsExactly(leased);
+    }
+
+    @Test
+    public void UpdateStockRepository_RequeueDead_ReturnRowsDueAgain() {
+        Instant now = Instant.now();
+
+        UpdateStock updateStock = updateStockRepository.save(UpdateStock.builder()
+                .request("this is a request")
+                .uri("this is a uri")
+                .sent(false)
+                .build());
+
+        entityManager.flush();
+
+        updateStockRepository.recordFailure(updateStock.getId(), 10, null, "this is an error", true);
+        entityManager.clear();
+
+        Assertions.assertThat(updateStockRepository.findTop100ByDeadTrueOrderByIdAsc()).hasSize(1);
+        Assertions.assertThat(updateStockRepository.requeueDead(updateStock.getId() + 1)).isEqualTo(0);
+        Assertions.assertThat(updateStockRepository.requeueDead()).isEqualTo(1);
+        entityManager.clear();
+
+        UpdateStock requeued = updateStockRepository.findById(updateStock.getId()).get();
+        Assertions.assertThat(requeued.isDead()).isFalse();
+        Assertions.assertThat(requeued.getAttempts()).isEqualTo(0);
+        Assertions.assertThat(requeued.getLastError()).isEqualTo("this is an error");
+        Assertions.assertThat(updateStockRepository.findClaimable(1L, updateStock.getId(), now, PageRequest.ofSize(10))).hasSize(1);
+    }
 }
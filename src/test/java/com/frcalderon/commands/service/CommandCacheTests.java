@@ -0,0 +1,167 @@
+package com.frcalderon.commands.service;
+
+import com.frcalderon.commands.controller.dto.CommandResponse;
+import com.frcalderon.commands.exceptions.CommandNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CommandCacheTests {
+
+    private final MutableClock clock = new MutableClock();
+
+    private final InMemoryCommandInvalidationBus commandInvalidationBus = new InMemoryCommandInvalidationBus();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private CommandCache commandCache;
+
+    @BeforeEach
+    void setUp() {
+        commandCache = newCommandCache();
+    }
+
+    @Test
+    public void CommandCache_Get_ReturnCachedCommandUntilExpired() {
+        CommandResponse first = commandCache.get(1L, () -> load(1L));
+
+        Assertions.assertThat(commandCache.get(1L, () -> load(1L))).isSameAs(first);
+
+        clock.advance(Duration.ofSeconds(31));
+
+        Assertions.assertThat(commandCache.get(1L, () -> load(1L))).isNotSameAs(first);
+        Assertions.assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    public void CommandCache_Get_ReturnEldestEvictedWhenFull() {
+        commandCache.get(1L, () -> load(1L));
+        commandCache.get(2L, () -> load(2L));
+        commandCache.get(3L, () -> load(3L));
+
+        Assertions.assertThat(commandCache.size()).isEqualTo(2);
+
+        commandCache.get(1L, () -> load(1L));
+        Assertions.assertThat(loads).hasValue(4);
+    }
+
+    @Test
+    public void CommandCache_Get_ReturnNotFoundWithoutCachingIt() {
+        Assertions.assertThatThrownBy(() -> commandCache.get(1L, () -> {
+            throw new CommandNotFoundException();
+        })).isInstanceOf(CommandNotFoundException.class);
+
+        Assertions.assertThat(commandCache.size()).isZero();
+        Assertions.assertThat(commandCache.get(1L, () -> load(1L)).getId()).isEqualTo(1L);
+    }
+
+    @Test
+    public void CommandCache_Get_ReturnLoadedCommandWithoutCachingItWhenInvalidatedWhileLoading() {
+        commandCache.get(1L, () -> {
+            commandCache.evict(List.of(2L));
+            return load(1L);
+        });
+
+        Assertions.assertThat(commandCache.size()).isZero();
+    }
+
+    @Test
+    public void CommandCache_OnCommandsChanged_ReturnEvictedOnEveryReplica() {
+        CommandCache otherReplica = newCommandCache();
+        commandCache.get(1L, () -> load(1L));
+        commandCache.get(2L, () -> load(2L));
+        otherReplica.get(1L, () -> load(1L));
+
+        CommandsChangedEvent event = new CommandsChangedEvent(List.of(1L));
+        commandCache.publishCommandsChanged(event);
+        commandCache.onCommandsChanged(event);
+
+        Assertions.assertThat(commandCache.size()).isEqualTo(1);
+        Assertions.assertThat(otherReplica.size()).isZero();
+    }
+
+    @Test
+    public void CommandCache_BindTo_ReturnHitAndMissCounters() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        commandCache.bindTo(registry);
+
+        commandCache.get(1L, () -> load(1L));
+        commandCache.get(1L, () -> load(1L));
+        commandCache.get(1L, () -> load(1L));
+
+        Assertions.assertThat(registry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(2);
+        Assertions.assertThat(registry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+        Assertions.assertThat(registry.get("cache.size").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    public void CommandCache_Clear_ReturnEveryCommandLoadedAgain() {
+        commandCache.get(1L, () -> load(1L));
+        commandCache.get(2L, () -> load(2L));
+
+        commandCache.clear();
+
+        Assertions.assertThat(commandCache.size()).isZero();
+        commandCache.get(1L, () -> load(1L));
+        Assertions.assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    public void CommandCache_Get_ReturnLoadedCommandEveryTimeWhenDisabled() {
+        ReflectionTestUtils.setField(commandCache, "ENABLED", false);
+
+        commandCache.get(1L, () -> load(1L));
+        commandCache.get(1L, () -> load(1L));
+
+        Assertions.assertThat(loads).hasValue(2);
+        Assertions.assertThat(commandCache.size()).isZero();
+    }
+
+    private CommandCache newCommandCache() {
+        CommandCache cache = new CommandCache(clock);
+        ReflectionTestUtils.setField(cache, "ENABLED", true);
+        ReflectionTestUtils.setField(cache, "MAX_ENTRIES", 2);
+        ReflectionTestUtils.setField(cache, "TTL", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(cache, "commandInvalidationBus", commandInvalidationBus);
+        cache.init();
+        return cache;
+    }
+
+    private CommandResponse load(Long id) {
+        loads.incrementAndGet();
+        return CommandResponse.builder().id(id).build();
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2023-06-15T10:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("Z");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.frcalderon.commands.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.frcalderon.commands.controller.dto.CommandProductRequest;
+import com.frcalderon.commands.controller.dto.CommandProductResponse;
+import com.frcalderon.commands.controller.dto.CommandRequest;
+import com.frcalderon.commands.controller.dto.CommandResponse;
+import com.frcalderon.commands.exceptions.InvalidCommandBatchException;
+import com.frcalderon.commands.exceptions.StatusTransitionNotSupportedException;
+import com.frcalderon.commands.model.Command;
+import com.frcalderon.commands.model.CommandStatus;
+import com.frcalderon.commands.repository.CommandProductRepository;
+import com.frcalderon.commands.repository.CommandRepository;
+import com.frcalderon.commands.repository.UpdateStockRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "ms-commands.commands.batch.chunk-size=2"
+})
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+@Import({CommandService.class, CommandCache.class, InMemoryCommandInvalidationBus.class, JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+public class CommandServiceBatchingTests {
+
+    @Autowired
+    private CommandService commandService;
+
+    @Autowired
+    private CommandRepository commandRepository;
+
+    @Autowired
+    private CommandProductRepository commandProductRepository;
+
+    @Autowired
+    private UpdateStockRepository updateStockRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void CommandService_Create_ReturnCommandWrittenInAHandfulOfRoundTrips() throws JsonProcessingException {
+        List<CommandProductRequest> products = new ArrayList<>();
+        for (long productId = 1; productId <= 50; productId++) {
+            products.add(CommandProductRequest.builder()
+                    .productId(productId)
+                    .productName("Lotus Cheesecake")
+                    .quantity(1)
+                    .price(5.25)
+                    .build());
+        }
+        CommandRequest request = CommandRequest.builder()
+                .deliveryDate("05-06-2023")
+                .commandProductList(products)
+                .build();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Command command = commandService.createCommand(request);
+        entityManager.flush();
+
+        Assertions.assertThat(command.getPrice()).isEqualTo(262.5);
+        Assertions.assertThat(command.getProducts()).hasSize(50);
+        Assertions.assertThat(statistics.getPrepareStatementCount()).isLessThan(10);
+        Assertions.assertThat(commandProductRepository.count()).isEqualTo(50);
+        Assertions.assertThat(updateStockRepository.findAllBySent(false)).hasSize(1);
+    }
+
+    @Test
+    public void CommandService_CreateCommands_ReturnResultPerItemAndOutboxRowPerChunk() throws IOException {
+        String body = "[" +
+                command(1L, "Lotus Cheesecake") + "," +
+                command(2L, "Oreo Cheesecake") + "," +
+                command(3L, null) + "," +
+                command(1L, "Lotus Cheesecake") + "," +
+                command(4L, "Carrot Cake") +
+                "]";
+
+        List<CommandBatchResult> results = commandService.createCommands(stream(body));
+
+        Assertions.assertThat(results).extracting(CommandBatchResult::index).containsExactly(0, 1, 2, 3, 4);
+        Assertions.assertThat(results).extracting(CommandBatchResult::created).containsExactly(true, true, false, true, true);
+        Assertions.assertThat(results.get(2).error()).contains("productName");
+        Assertions.assertThat(commandRepository.count()).isEqualTo(4);
+        Assertions.assertThat(commandProductRepository.count()).isEqualTo(4);
+        Assertions.assertThat(updateStockRepository.findAllBySent(false)).hasSize(2);
+    }
+
+    @Test
+    public void CommandService_CreateCommands_ReturnItemsBeforeMalformedOnePersisted() throws IOException {
+        String body = "[" + command(1L, "Lotus Cheesecake") + ", {\"deliveryDate\": ";
+
+        List<CommandBatchResult> results = commandService.createCommands(stream(body));
+
+        Assertions.assertThat(results).extracting(CommandBatchResult::created).containsExactly(true, false);
+        Assertions.assertThat(results.get(1).error()).startsWith("Malformed command");
+        Assertions.assertThat(commandRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void CommandService_CreateCommands_ReturnInvalidCommandBatchException() {
+        Assertions.assertThatThrownBy(() -> commandService.createCommands(stream(command(1L, "Lotus Cheesecake"))))
+                .isInstanceOf(InvalidCommandBatchException.class);
+    }
+
+    @Test
+    public void CommandService_ChangeStatus_ReturnMovedAndRejectedIds() {
+        Command toDo = commandRepository.save(Command.builder()
+                .deliveryDate(LocalDate.now().plusDays(5))
+                .status(CommandStatus.TO_DO)
+                .price(10.5)
+                .build());
+
+        Command prepared = commandRepository.save(Command.builder()
+                .deliveryDate(LocalDate.now().plusDays(5))
+                .status(CommandStatus.PREPARED)
+                .price(10.5)
+                .build());
+
+        CommandStatusResult result = commandService.changeStatuses(
+                List.of(toDo.getId(), prepared.getId(), toDo.getId(), -1L), CommandStatus.IN_PROGRESS);
+
+        Assertions.assertThat(result.moved()).containsExactly(toDo.getId());
+        Assertions.assertThat(result.rejected()).containsExactly(prepared.getId(), -1L);
+        Assertions.assertThat(commandRepository.findById(toDo.getId()).get().getStatus()).isEqualTo(CommandStatus.IN_PROGRESS);
+        Assertions.assertThat(commandRepository.findById(prepared.getId()).get().getStatus()).isEqualTo(CommandStatus.PREPARED);
+    }
+
+    @Test
+    public void CommandService_ChangeStatus_ReturnStatusTransitionNotSupportedException() {
+        Assertions.assertThatThrownBy(() -> commandService.changeStatuses(List.of(1L), CommandStatus.CANCELLED))
+                .isInstanceOf(StatusTransitionNotSupportedException.class);
+    }
+
+    @Test
+    public void CommandService_ChangeStatus_ReturnCommandReadBackInTheTransitionStatement() throws JsonProcessingException {
+        Command command = commandService.createCommand(CommandRequest.builder()
+                .deliveryDate("05-06-2023")
+                .commandProductList(List.of(CommandProductRequest.builder()
+                        .productId(1L)
+                        .productName("Lotus Cheesecake")
+                        .quantity(2)
+                        .price(5.25)
+                        .build()))
+                .build());
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        CommandResponse response = commandService.changeStatus(command.getId(), CommandStatus.IN_PROGRESS);
+
+        Assertions.assertThat(response.getStatus()).isEqualTo(CommandStatus.IN_PROGRESS);
+        Assertions.assertThat(response.getProducts()).extracting(CommandProductResponse::getQuantity).containsExactly(2);
+        Assertions.assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    private static String command(Long productId, String productName) {
+        return "{\"deliveryDate\":\"05-06-2023\",\"commandProductList\":[{\"productId\":" + productId +
+                ",\"productName\":" + (productName == null ? "null" : "\"" + productName + "\"") +
+                ",\"quantity\":2,\"price\":5.25}]}";
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
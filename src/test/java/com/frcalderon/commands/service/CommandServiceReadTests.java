@@ -0,0 +1,132 @@
+package com.frcalderon.commands.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frcalderon.commands.controller.dto.CommandResponse;
+import com.frcalderon.commands.model.Command;
+import com.frcalderon.commands.model.CommandProduct;
+import com.frcalderon.commands.model.CommandSort;
+import com.frcalderon.commands.model.CommandStatus;
+import com.frcalderon.commands.repository.CommandFilter;
+import jakarta.persistence.EntityManagerFactory;
+import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "ms-commands.commands.export.fetch-size=8"
+})
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+@Import({CommandService.class, CommandCache.class, InMemoryCommandInvalidationBus.class, JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+public class CommandServiceReadTests {
+
+    @Autowired
+    private CommandService commandService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private Long firstId;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 20; i++) {
+            Command command = entityManager.persist(Command.builder()
+                    .deliveryDate(LocalDate.of(2023, 6, 1).plusDays(i % 5))
+                    .status(CommandStatus.TO_DO)
+                    .price(11.0)
+                    .build());
+            for (long productId = 1; productId <= 3; productId++) {
+                entityManager.persist(CommandProduct.builder()
+                        .command(command)
+                        .productId(productId)
+                        .productName("Lotus Cheesecake")
+                        .quantity(2)
+                        .unitPrice(5.5)
+                        .totalPrice(11.0)
+                        .build());
+            }
+            if (firstId == null) {
+                firstId = command.getId();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    public void CommandService_GetCommands_ReturnPageWithProductsInTwoQueries() {
+        CommandPage page = commandService.getCommands(CommandFilter.none(), CommandSort.DELIVERY_DATE, null, 15);
+        List<CommandResponse> responses = page.commands();
+
+        Assertions.assertThat(responses).hasSize(15);
+        Assertions.assertThat(responses).allSatisfy(response -> Assertions.assertThat(response.getProducts()).hasSize(3));
+        Assertions.assertThat(responses).extracting(CommandResponse::getDeliveryDate).isSorted();
+        Assertions.assertThat(page.nextCursor()).isNotNull();
+        Assertions.assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+
+        CommandPage nextPage = commandService.getCommands(CommandFilter.none(), CommandSort.DELIVERY_DATE, page.nextCursor(), 15);
+        Assertions.assertThat(nextPage.commands()).hasSize(5);
+        Assertions.assertThat(nextPage.nextCursor()).isNull();
+        Assertions.assertThat(statistics.getPrepareStatementCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void CommandService_GetCommand_ReturnCommandWithProductsInOneQueryThenFromCache() {
+        CommandResponse response = commandService.getCommand(firstId);
+
+        Assertions.assertThat(response.getProducts()).hasSize(3);
+        Assertions.assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        Assertions.assertThat(commandService.getCommand(firstId)).isSameAs(response);
+        Assertions.assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void CommandService_ExportCommands_ReturnOneLinePerCommandInOneQuery() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        commandService.exportCommands(out);
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        Assertions.assertThat(out.toString(StandardCharsets.UTF_8)).endsWith("\n");
+        Assertions.assertThat(lines).hasSize(20);
+
+        List<CommandResponse> responses = new ArrayList<>();
+        for (String line : lines) {
+            responses.add(objectMapper.readValue(line, CommandResponse.class));
+        }
+        Assertions.assertThat(responses).extracting(CommandResponse::getId).isSorted().startsWith(firstId);
+        Assertions.assertThat(responses).allSatisfy(response -> Assertions.assertThat(response.getProducts()).hasSize(3));
+        // commands and their lines come over a single joined stream, whatever the fetch size
+        Assertions.assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
@@ -4,12 +4,18 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.frcalderon.commands.controller.dto.CommandProductRequest;
 import com.frcalderon.commands.controller.dto.CommandRequest;
+import com.frcalderon.commands.controller.dto.CommandResponse;
 import com.frcalderon.commands.exceptions.CommandCouldNotBeUpdatedException;
 import com.frcalderon.commands.exceptions.CommandNotFoundException;
+import com.frcalderon.commands.exceptions.InvalidCommandPageException;
 import com.frcalderon.commands.model.Command;
 import com.frcalderon.commands.model.CommandProduct;
+import com.frcalderon.commands.model.CommandSort;
+import com.frcalderon.commands.model.CommandStatus;
 import com.frcalderon.commands.model.UpdateStock;
 import com.frcalderon.commands.model.UpdateStockRequest;
+import com.frcalderon.commands.repository.CommandFilter;
+import com.frcalderon.commands.repository.CommandLineRow;
 import com.frcalderon.commands.repository.CommandProductRepository;
 import com.frcalderon.commands.repository.CommandRepository;
 import com.frcalderon.commands.repository.UpdateStockRepository;
@@ -21,6 +27,9 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -44,6 +53,12 @@ class CommandServiceTests {
     @Mock
     private CommandProductRepository commandProductRepository;
 
+    @Mock
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Spy
+    private CommandCache commandCache = new CommandCache();
+
     @InjectMocks
     private CommandService commandService;
 
@@ -57,13 +72,20 @@ class CommandServiceTests {
 
     private List<CommandProduct> commandProductList;
 
+    private CommandLineRow commandLineRow;
+
     @BeforeEach
     void setUp() {
         closeable = MockitoAnnotations.openMocks(this);
 
+        ReflectionTestUtils.setField(commandService, "ADD_STOCK_URI", "stock/add");
+        ReflectionTestUtils.setField(commandService, "CONSUME_STOCK_URI", "stock/consume");
+        ReflectionTestUtils.setField(commandService, "PAGE_DEFAULT_SIZE", 50);
+        ReflectionTestUtils.setField(commandService, "PAGE_MAX_SIZE", 500);
+
         command = Command.builder()
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.TO_DO)
+                .status(CommandStatus.TO_DO)
                 .price(10.5)
                 .build();
 
@@ -82,6 +104,9 @@ class CommandServiceTests {
 
         commandList = new ArrayList<>();
         commandList.add(command);
+
+        commandLineRow = new CommandLineRow(1L, command.getDeliveryDate(), command.getStatus(), command.getPrice(),
+                1L, 1L, "Lotus Cheesecake", 2, 5.25, 10.5);
     }
 
     @AfterEach
@@ -90,35 +115,69 @@ class CommandServiceTests {
     }
 
     @Test
-    public void CommandService_GetAll_ReturnCommandsList() {
-        when(commandRepository.findAll()).thenReturn(commandList);
+    public void CommandService_GetCommands_ReturnLastPageWithoutCursor() {
+        when(commandRepository.findPageIds(CommandFilter.none(), CommandSort.ID, null, null, 51)).thenReturn(List.of(1L));
+        when(commandRepository.findLinesByIdIn(List.of(1L))).thenReturn(List.of(commandLineRow));
+
+        CommandPage result = commandService.getCommands(CommandFilter.none(), CommandSort.ID, null, null);
 
-        List<Command> result = commandService.getAllCommands();
+        Assertions.assertEquals(1, result.commands().size());
+        Assertions.assertEquals(1L, result.commands().get(0).getId());
+        Assertions.assertEquals(1, result.commands().get(0).getProducts().size());
+        Assertions.assertNull(result.nextCursor());
 
-        Assertions.assertEquals(1, result.size());
-        Assertions.assertEquals(command, result.get(0));
+        verify(commandRepository, times(0)).findAll();
+    }
 
-        verify(commandRepository, times(1)).findAll();
+    @Test
+    public void CommandService_GetCommands_ReturnNextCursorAfterLastCommandOfPage() {
+        CommandLineRow first = new CommandLineRow(3L, LocalDate.of(2023, 6, 15), CommandStatus.TO_DO, 0.0, null, null, null, null, null, null);
+        CommandLineRow second = new CommandLineRow(1L, LocalDate.of(2023, 6, 16), CommandStatus.TO_DO, 0.0, null, null, null, null, null, null);
+        String cursor = new CommandCursor(CommandSort.DELIVERY_DATE, LocalDate.of(2023, 6, 14), 9L).encode();
+        CommandFilter filter = new CommandFilter(List.of(CommandStatus.TO_DO), null, null, null);
+        when(commandRepository.findPageIds(filter, CommandSort.DELIVERY_DATE, LocalDate.of(2023, 6, 14), 9L, 3))
+                .thenReturn(List.of(3L, 1L, 2L));
+        when(commandRepository.findLinesByIdIn(List.of(3L, 1L))).thenReturn(List.of(second, first));
+
+        CommandPage result = commandService.getCommands(filter, CommandSort.DELIVERY_DATE, cursor, 2);
+
+        Assertions.assertEquals(List.of(3L, 1L), result.commands().stream().map(CommandResponse::getId).toList());
+        Assertions.assertTrue(result.commands().get(0).getProducts().isEmpty());
+        Assertions.assertEquals(new CommandCursor(CommandSort.DELIVERY_DATE, LocalDate.of(2023, 6, 16), 1L),
+                CommandCursor.decode(result.nextCursor()));
+    }
+
+    @Test
+    public void CommandService_GetCommands_ReturnInvalidCommandPageException() {
+        String cursor = new CommandCursor(CommandSort.ID, null, 9L).encode();
+
+        Assertions.assertThrows(InvalidCommandPageException.class, () -> commandService.getCommands(CommandFilter.none(), CommandSort.DELIVERY_DATE, cursor, null));
+        Assertions.assertThrows(InvalidCommandPageException.class, () -> commandService.getCommands(CommandFilter.none(), CommandSort.ID, "not a cursor", null));
     }
 
     @Test
     public void CommandService_FindById_ReturnCommand() {
-        when(commandRepository.findById(1L)).thenReturn(Optional.of(command));
+        when(commandRepository.findLinesByIdIn(List.of(1L))).thenReturn(List.of(commandLineRow));
 
-        Command result = commandService.getCommand(1L);
+        CommandResponse result = commandService.getCommand(1L);
 
-        Assertions.assertEquals(command, result);
+        Assertions.assertEquals(1L, result.getId());
+        Assertions.assertEquals(command.getDeliveryDate(), result.getDeliveryDate());
+        Assertions.assertEquals(command.getStatus(), result.getStatus());
+        Assertions.assertEquals(command.getPrice(), result.getPrice());
+        Assertions.assertEquals(1, result.getProducts().size());
+        Assertions.assertEquals("Lotus Cheesecake", result.getProducts().get(0).getProductName());
 
-        verify(commandRepository, times(1)).findById(1L);
+        verify(commandRepository, times(1)).findLinesByIdIn(List.of(1L));
     }
 
     @Test
     public void CommandService_FindById_ReturnCommandNotFoundException() {
-        when(commandRepository.findById(2L)).thenReturn(Optional.empty());
+        when(commandRepository.findLinesByIdIn(List.of(2L))).thenReturn(List.of());
 
         Assertions.assertThrows(CommandNotFoundException.class, () -> commandService.getCommand(2L));
 
-        verify(commandRepository, times(1)).findById(2L);
+        verify(commandRepository, times(1)).findLinesByIdIn(List.of(2L));
     }
 
     @Test
@@ -138,7 +197,7 @@ class CommandServiceTests {
         Command newCommand = Command.builder()
                 .id(2L)
                 .deliveryDate(LocalDate.parse("05-06-2023", Utils.localDateTimeFormatter()))
-                .status(Command.TO_DO)
+                .status(CommandStatus.TO_DO)
                 .price(15.0)
                 .products(commandProductList)
                 .build();
@@ -166,19 +225,21 @@ class CommandServiceTests {
         when(objectMapper.writeValueAsString(any(String.class))).thenReturn("request");
         when(updateStockRepository.save(any(UpdateStock.class))).thenReturn(updateStock);
         when(commandRepository.save(any(Command.class))).thenReturn(newCommand);
-        when(commandProductRepository.save(any(CommandProduct.class))).thenReturn(newCommandProduct);
-        when(commandRepository.findById(2L)).thenReturn(Optional.of(newCommand));
+        when(commandProductRepository.saveAll(anyList())).thenReturn(Collections.singletonList(newCommandProduct));
 
         Command result = commandService.createCommand(request);
 
         Assertions.assertNotNull(result);
         Assertions.assertTrue(result.getDeliveryDate().isEqual(LocalDate.parse("05-06-2023", Utils.localDateTimeFormatter())));
-        Assertions.assertEquals(Command.TO_DO, result.getStatus());
+        Assertions.assertEquals(CommandStatus.TO_DO, result.getStatus());
         Assertions.assertEquals(15.0, result.getPrice());
 
-        verify(commandRepository, times(2)).save(any(Command.class));
-        verify(commandProductRepository, times(1)).save(any(CommandProduct.class));
+        verify(commandRepository, times(1)).save(argThat(saved -> saved.getPrice() == 15.0));
+        verify(commandProductRepository, times(1)).saveAll(anyList());
+        verify(commandProductRepository, never()).save(any(CommandProduct.class));
+        verify(commandRepository, never()).findById(any());
         verify(updateStockRepository, times(1)).save(any(UpdateStock.class));
+        verify(applicationEventPublisher, times(1)).publishEvent(any(UpdateStockSavedEvent.class));
     }
 
     @Test
@@ -198,7 +259,7 @@ class CommandServiceTests {
         Command updatedCommand = Command.builder()
                 .id(1L)
                 .deliveryDate(LocalDate.parse("15-06-2023", Utils.localDateTimeFormatter()))
-                .status(Command.TO_DO)
+                .status(CommandStatus.TO_DO)
                 .price(7.5)
                 .products(commandProductList)
                 .build();
@@ -226,8 +287,6 @@ class CommandServiceTests {
         when(commandRepository.findById(1L)).thenReturn(Optional.of(updatedCommand));
         when(objectMapper.writeValueAsString(any(String.class))).thenReturn("request");
         when(updateStockRepository.save(any(UpdateStock.class))).thenReturn(updateStock);
-        doNothing().when(commandProductRepository).deleteByCommandId(any(Long.class));
-        when(commandProductRepository.save(any(CommandProduct.class))).thenReturn(updatedCommandProduct);
         when(commandRepository.save(any(Command.class))).thenReturn(updatedCommand);
 
 
@@ -235,14 +294,69 @@ class CommandServiceTests {
 
         Assertions.assertNotNull(result);
         Assertions.assertTrue(result.getDeliveryDate().isEqual(LocalDate.parse("15-06-2023", Utils.localDateTimeFormatter())));
-        Assertions.assertEquals(Command.TO_DO, result.getStatus());
+        Assertions.assertEquals(CommandStatus.TO_DO, result.getStatus());
         Assertions.assertEquals(7.5, result.getPrice());
+        Assertions.assertEquals(1, result.getProducts().size());
+        Assertions.assertEquals(1, result.getProducts().get(0).getQuantity());
 
-        verify(commandRepository, times(2)).findById(1L);
-        verify(commandProductRepository, times(1)).deleteByCommandId(any(Long.class));
-        verify(commandProductRepository, times(1)).save(any(CommandProduct.class));
+        verify(commandRepository, times(1)).findById(1L);
+        verify(commandProductRepository, never()).deleteByCommandId(any(Long.class));
+        verify(commandProductRepository, never()).deleteAll(anyList());
+        verify(commandProductRepository, never()).saveAll(anyList());
         verify(commandRepository, times(1)).save(any(Command.class));
-        verify(updateStockRepository, times(2)).save(any(UpdateStock.class));
+        verify(updateStockRepository, times(1)).save(argThat(saved -> "stock/add".equals(saved.getUri())));
+    }
+
+    @Test
+    public void CommandService_Update_ReturnOnlyChangedLinesWritten() throws JsonProcessingException {
+        CommandRequest request = CommandRequest.builder()
+                .deliveryDate("15-06-2023")
+                .commandProductList(List.of(
+                        CommandProductRequest.builder()
+                                .productId(1L)
+                                .productName("Lotus Cheesecake")
+                                .quantity(2)
+                                .price(5.25)
+                                .build(),
+                        CommandProductRequest.builder()
+                                .productId(3L)
+                                .productName("Oreo Cheesecake")
+                                .quantity(1)
+                                .price(7.5)
+                                .build()
+                ))
+                .build();
+
+        CommandProduct removedCommandProduct = CommandProduct.builder()
+                .productId(2L)
+                .productName("Carrot Cake")
+                .quantity(4)
+                .unitPrice(3.0)
+                .totalPrice(12.0)
+                .build();
+
+        Command commandToUpdate = Command.builder()
+                .id(1L)
+                .deliveryDate(LocalDate.now().plusDays(5))
+                .status(CommandStatus.TO_DO)
+                .price(22.5)
+                .products(new ArrayList<>(List.of(commandProduct, removedCommandProduct)))
+                .build();
+
+        when(commandRepository.findById(1L)).thenReturn(Optional.of(commandToUpdate));
+        when(commandRepository.save(any(Command.class))).thenReturn(commandToUpdate);
+
+        Command result = commandService.updateCommand(1L, request);
+
+        Assertions.assertEquals(18.0, result.getPrice());
+        Assertions.assertEquals(2, result.getProducts().size());
+
+        verify(commandProductRepository, times(1)).deleteAll(List.of(removedCommandProduct));
+        verify(commandProductRepository, times(1)).saveAll(argThat(saved -> saved.iterator().next().getProductId() == 3L));
+        verify(objectMapper, times(1)).writeValueAsString(List.of(UpdateStockRequest.builder().productId(2L).stock(4).build()));
+        verify(objectMapper, times(1)).writeValueAsString(List.of(UpdateStockRequest.builder().productId(3L).stock(1).build()));
+        verify(updateStockRepository, times(1)).save(argThat(saved -> "stock/add".equals(saved.getUri())));
+        verify(updateStockRepository, times(1)).save(argThat(saved -> "stock/consume".equals(saved.getUri())));
     }
 
     @Test
@@ -289,6 +403,7 @@ class CommandServiceTests {
         verify(commandRepository, times(1)).findById(1L);
         verify(commandRepository, times(1)).deleteById(1L);
         verify(updateStockRepository, times(1)).save(any(UpdateStock.class));
+        verify(applicationEventPublisher, times(1)).publishEvent(new CommandsChangedEvent(List.of(1L)));
     }
 
     @Test
@@ -303,10 +418,10 @@ class CommandServiceTests {
     }
 
     @Test
-    public void CommandService_CommandCancelled_ReturnCommand() throws JsonProcessingException {
+    public void CommandService_ChangeStatusToCancelled_ReturnCommand() throws JsonProcessingException {
         Command commandCancelled = Command.builder()
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.CANCELLED)
+                .status(CommandStatus.CANCELLED)
                 .price(10.5)
                 .products(commandProductList)
                 .build();
@@ -323,44 +438,49 @@ class CommandServiceTests {
                 .sent(false)
                 .build();
 
-        when(commandRepository.findById(1L)).thenReturn(Optional.of(commandCancelled));
+        when(commandRepository.transition(eq(1L), anyCollection(), eq(CommandStatus.CANCELLED))).thenReturn(transitionedLines(commandCancelled));
         when(objectMapper.writeValueAsString(any(String.class))).thenReturn("request");
         when(updateStockRepository.save(any(UpdateStock.class))).thenReturn(updateStock);
-        when(commandRepository.save(any(Command.class))).thenReturn(commandCancelled);
 
-        Command result = commandService.commandCancelled(1L);
+        CommandResponse result = commandService.changeStatus(1L, CommandStatus.CANCELLED);
 
         Assertions.assertNotNull(result);
-        Assertions.assertEquals(Command.CANCELLED, result.getStatus());
+        Assertions.assertEquals(CommandStatus.CANCELLED, result.getStatus());
 
-        verify(commandRepository, times(1)).findById(1L);
-        verify(commandRepository, times(1)).save(any(Command.class));
-        verify(updateStockRepository, times(1)).save(any(UpdateStock.class));
+        verify(commandRepository, times(0)).findById(1L);
+        verify(commandRepository, times(0)).save(any(Command.class));
+        verify(updateStockRepository, times(1)).save(argThat(saved -> "stock/add".equals(saved.getUri())));
+        verify(applicationEventPublisher, times(1)).publishEvent(new CommandsChangedEvent(List.of(1L)));
     }
 
     @Test
-    public void CommandService_CommandCancelled_ReturnCommandNotFoundException() {
-        when(commandRepository.findById(1L)).thenReturn(Optional.empty());
+    public void CommandService_ChangeStatusToCancelled_ReturnCommandNotFoundException() {
+        when(commandRepository.existsById(1L)).thenReturn(false);
 
-        Assertions.assertThrows(CommandNotFoundException.class, () -> commandService.commandCancelled(1L));
+        Assertions.assertThrows(CommandNotFoundException.class, () -> commandService.changeStatus(1L, CommandStatus.CANCELLED));
 
-        verify(commandRepository, times(1)).findById(1L);
-        verify(commandRepository, times(0)).save(any(Command.class));
+        verify(commandRepository, times(1)).transition(eq(1L), anyCollection(), eq(CommandStatus.CANCELLED));
+        verify(commandRepository, times(0)).findById(1L);
         verify(updateStockRepository, times(0)).save(any(UpdateStock.class));
     }
 
     @Test
-    public void CommandService_CommandToDo_ReturnCommand() throws JsonProcessingException {
-        Command commandCancelled = Command.builder()
-                .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.CANCELLED)
-                .price(10.5)
-                .products(commandProductList)
-                .build();
+    public void CommandService_ChangeStatusToCancelled_ReturnCommandCouldNotBeUpdatedException() {
+        when(commandRepository.existsById(1L)).thenReturn(true);
+
+        Assertions.assertThrows(CommandCouldNotBeUpdatedException.class, () -> commandService.changeStatus(1L, CommandStatus.CANCELLED));
+
+        verify(commandRepository, times(1)).transition(eq(1L), anyCollection(), eq(CommandStatus.CANCELLED));
+        verify(commandRepository, times(0)).findById(1L);
+        verify(updateStockRepository, times(0)).save(any(UpdateStock.class));
+        verify(applicationEventPublisher, times(0)).publishEvent(any(CommandsChangedEvent.class));
+    }
 
+    @Test
+    public void CommandService_ChangeStatusToToDo_ReturnCommand() throws JsonProcessingException {
         Command commandToDo = Command.builder()
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.TO_DO)
+                .status(CommandStatus.TO_DO)
                 .price(10.5)
                 .products(commandProductList)
                 .build();
@@ -377,202 +497,180 @@ class CommandServiceTests {
                 .sent(false)
                 .build();
 
-        when(commandRepository.findById(1L)).thenReturn(Optional.of(commandCancelled));
+        when(commandRepository.transition(eq(1L), anyCollection(), eq(CommandStatus.TO_DO))).thenReturn(transitionedLines(commandToDo));
         when(objectMapper.writeValueAsString(any(String.class))).thenReturn("request");
         when(updateStockRepository.save(any(UpdateStock.class))).thenReturn(updateStock);
-        when(commandRepository.save(any(Command.class))).thenReturn(commandToDo);
 
-        Command result = commandService.commandToDo(1L);
+        CommandResponse result = commandService.changeStatus(1L, CommandStatus.TO_DO);
 
         Assertions.assertNotNull(result);
-        Assertions.assertEquals(Command.TO_DO, result.getStatus());
+        Assertions.assertEquals(CommandStatus.TO_DO, result.getStatus());
 
-        verify(commandRepository, times(1)).findById(1L);
-        verify(commandRepository, times(1)).save(any(Command.class));
-        verify(updateStockRepository, times(1)).save(any(UpdateStock.class));
+        verify(commandRepository, times(0)).findById(1L);
+        verify(commandRepository, times(0)).save(any(Command.class));
+        verify(updateStockRepository, times(1)).save(argThat(saved -> "stock/consume".equals(saved.getUri())));
     }
 
     @Test
-    public void CommandService_CommandToDo_ReturnCommandNotFoundException() {
-        when(commandRepository.findById(1L)).thenReturn(Optional.empty());
+    public void CommandService_ChangeStatusToToDo_ReturnCommandNotFoundException() {
+        when(commandRepository.existsById(1L)).thenReturn(false);
 
-        Assertions.assertThrows(CommandNotFoundException.class, () -> commandService.commandToDo(1L));
+        Assertions.assertThrows(CommandNotFoundException.class, () -> commandService.changeStatus(1L, CommandStatus.TO_DO));
 
-        verify(commandRepository, times(1)).findById(1L);
-        verify(commandRepository, times(0)).save(any(Command.class));
+        verify(commandRepository, times(1)).transition(eq(1L), anyCollection(), eq(CommandStatus.TO_DO));
+        verify(commandRepository, times(0)).findById(1L);
         verify(updateStockRepository, times(0)).save(any(UpdateStock.class));
     }
 
     @Test
-    public void CommandService_CommandToDo_ReturnCommandCouldNotBeUpdatedException() {
-        Command commandToDo = Command.builder()
-                .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.TO_DO)
-                .price(10.5)
-                .build();
+    public void CommandService_ChangeStatusToToDo_ReturnCommandCouldNotBeUpdatedException() {
+        when(commandRepository.existsById(1L)).thenReturn(true);
 
-        when(commandRepository.findById(1L)).thenReturn(Optional.of(commandToDo));
+        Assertions.assertThrows(CommandCouldNotBeUpdatedException.class, () -> commandService.changeStatus(1L, CommandStatus.TO_DO));
 
-        Assertions.assertThrows(CommandCouldNotBeUpdatedException.class, () -> commandService.commandToDo(1L));
-
-        verify(commandRepository, times(1)).findById(1L);
-        verify(commandRepository, times(0)).save(any(Command.class));
+        verify(commandRepository, times(1)).transition(eq(1L), anyCollection(), eq(CommandStatus.TO_DO));
+        verify(commandRepository, times(0)).findById(1L);
         verify(updateStockRepository, times(0)).save(any(UpdateStock.class));
     }
 
     @Test
-    public void CommandService_CommandInProgress_ReturnCommand() {
-        Command commandToDo = Command.builder()
-                .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.TO_DO)
-                .price(10.5)
-                .build();
-
+    public void CommandService_ChangeStatusToInProgress_ReturnCommand() throws JsonProcessingException {
         Command commandInProgress = Command.builder()
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.IN_PROGRESS)
+                .status(CommandStatus.IN_PROGRESS)
                 .price(10.5)
                 .build();
 
-        when(commandRepository.findById(1L)).thenReturn(Optional.of(commandToDo));
-        when(commandRepository.save(any(Command.class))).thenReturn(commandInProgress);
+        when(commandRepository.transition(eq(1L), anyCollection(), eq(CommandStatus.IN_PROGRESS))).thenReturn(transitionedLines(commandInProgress));
 
-        Command result = commandService.commandInProgress(1L);
+        CommandResponse result = commandService.changeStatus(1L, CommandStatus.IN_PROGRESS);
 
         Assertions.assertNotNull(result);
-        Assertions.assertEquals(Command.IN_PROGRESS, result.getStatus());
+        Assertions.assertEquals(CommandStatus.IN_PROGRESS, result.getStatus());
 
-        verify(commandRepository, times(1)).findById(1L);
-        verify(commandRepository, times(1)).save(any(Command.class));
+        verify(commandRepository, times(0)).findById(1L);
+        verify(commandRepository, times(0)).save(any(Command.class));
+        verify(updateStockRepository, times(0)).save(any(UpdateStock.class));
     }
 
     @Test
-    public void CommandService_CommandInProgress_ReturnCommandNotFoundException() {
-        when(commandRepository.findById(1L)).thenReturn(Optional.empty());
+    public void CommandService_ChangeStatusToInProgress_ReturnCommandNotFoundException() {
+        when(commandRepository.existsById(1L)).thenReturn(false);
 
-        Assertions.assertThrows(CommandNotFoundException.class, () -> commandService.commandInProgress(1L));
+        Assertions.assertThrows(CommandNotFoundException.class, () -> commandService.changeStatus(1L, CommandStatus.IN_PROGRESS));
 
-        verify(commandRepository, times(1)).findById(1L);
-        verify(commandRepository, times(0)).save(any(Command.class));
+        verify(commandRepository, times(1)).transition(eq(1L), anyCollection(), eq(CommandStatus.IN_PROGRESS));
+        verify(commandRepository, times(0)).findById(1L);
+        verify(updateStockRepository, times(0)).save(any(UpdateStock.class));
     }
 
     @Test
-    public void CommandService_CommandInProgress_ReturnCommandCouldNotBeUpdatedException() {
-        Command commandInProgress = Command.builder()
-                .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.IN_PROGRESS)
-                .price(10.5)
-                .build();
-
-        when(commandRepository.findById(1L)).thenReturn(Optional.of(commandInProgress));
+    public void CommandService_ChangeStatusToInProgress_ReturnCommandCouldNotBeUpdatedException() {
+        when(commandRepository.existsById(1L)).thenReturn(true);
 
-        Assertions.assertThrows(CommandCouldNotBeUpdatedException.class, () -> commandService.commandInProgress(1L));
+        Assertions.assertThrows(CommandCouldNotBeUpdatedException.class, () -> commandService.changeStatus(1L, CommandStatus.IN_PROGRESS));
 
-        verify(commandRepository, times(1)).findById(1L);
-        verify(commandRepository, times(0)).save(any(Command.class));
+        verify(commandRepository, times(1)).transition(eq(1L), anyCollection(), eq(CommandStatus.IN_PROGRESS));
+        verify(commandRepository, times(0)).findById(1L);
+        verify(updateStockRepository, times(0)).save(any(UpdateStock.class));
     }
 
     @Test
-    public void CommandService_CommandPrepared_ReturnCommand() {
-        Command commandInProgress = Command.builder()
-                .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.IN_PROGRESS)
-                .price(10.5)
-                .build();
-
+    public void CommandService_ChangeStatusToPrepared_ReturnCommand() throws JsonProcessingException {
         Command commandPrepared = Command.builder()
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.PREPARED)
+                .status(CommandStatus.PREPARED)
                 .price(10.5)
                 .build();
 
-        when(commandRepository.findById(1L)).thenReturn(Optional.of(commandInProgress));
-        when(commandRepository.save(any(Command.class))).thenReturn(commandPrepared);
+        when(commandRepository.transition(eq(1L), anyCollection(), eq(CommandStatus.PREPARED))).thenReturn(transitionedLines(commandPrepared));
 
-        Command result = commandService.commandPrepared(1L);
+        CommandResponse result = commandService.changeStatus(1L, CommandStatus.PREPARED);
 
         Assertions.assertNotNull(result);
-        Assertions.assertEquals(Command.PREPARED, result.getStatus());
+        Assertions.assertEquals(CommandStatus.PREPARED, result.getStatus());
 
-        verify(commandRepository, times(1)).findById(1L);
-        verify(commandRepository, times(1)).save(any(Command.class));
+        verify(commandRepository, times(0)).findById(1L);
+        verify(commandRepository, times(0)).save(any(Command.class));
+        verify(updateStockRepository, times(0)).save(any(UpdateStock.class));
     }
 
     @Test
-    public void CommandService_CommandPrepared_ReturnCommandNotFoundException() {
-        when(commandRepository.findById(1L)).thenReturn(Optional.empty());
+    public void CommandService_ChangeStatusToPrepared_ReturnCommandNotFoundException() {
+        when(commandRepository.existsById(1L)).thenReturn(false);
 
-        Assertions.assertThrows(CommandNotFoundException.class, () -> commandService.commandPrepared(1L));
+        Assertions.assertThrows(CommandNotFoundException.class, () -> commandService.changeStatus(1L, CommandStatus.PREPARED));
 
-        verify(commandRepository, times(1)).findById(1L);
-        verify(commandRepository, times(0)).save(any(Command.class));
+        verify(commandRepository, times(1)).transition(eq(1L), anyCollection(), eq(CommandStatus.PREPARED));
+        verify(commandRepository, times(0)).findById(1L);
+        verify(updateStockRepository, times(0)).save(any(UpdateStock.class));
     }
 
     @Test
-    public void CommandService_CommandPrepared_ReturnCommandCouldNotBeUpdatedException() {
-        Command commandInProgress = Command.builder()
-                .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.PREPARED)
-                .price(10.5)
-                .build();
+    public void CommandService_ChangeStatusToPrepared_ReturnCommandCouldNotBeUpdatedException() {
+        when(commandRepository.existsById(1L)).thenReturn(true);
 
-        when(commandRepository.findById(1L)).thenReturn(Optional.of(commandInProgress));
+        Assertions.assertThrows(CommandCouldNotBeUpdatedException.class, () -> commandService.changeStatus(1L, CommandStatus.PREPARED));
 
-        Assertions.assertThrows(CommandCouldNotBeUpdatedException.class, () -> commandService.commandPrepared(1L));
-
-        verify(commandRepository, times(1)).findById(1L);
-        verify(commandRepository, times(0)).save(any(Command.class));
+        verify(commandRepository, times(1)).transition(eq(1L), anyCollection(), eq(CommandStatus.PREPARED));
+        verify(commandRepository, times(0)).findById(1L);
+        verify(updateStockRepository, times(0)).save(any(UpdateStock.class));
     }
 
     @Test
-    public void CommandService_CommandDelivered_ReturnCommand() {
-        Command commandPrepared = Command.builder()
-                .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.PREPARED)
-                .price(10.5)
-                .build();
-
+    public void CommandService_ChangeStatusToDelivered_ReturnCommand() throws JsonProcessingException {
         Command commandDelivered = Command.builder()
                 .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.DELIVERED)
+                .status(CommandStatus.DELIVERED)
                 .price(10.5)
                 .build();
 
-        when(commandRepository.findById(1L)).thenReturn(Optional.of(commandPrepared));
-        when(commandRepository.save(any(Command.class))).thenReturn(commandDelivered);
+        when(commandRepository.transition(eq(1L), anyCollection(), eq(CommandStatus.DELIVERED))).thenReturn(transitionedLines(commandDelivered));
 
-        Command result = commandService.commandDelivered(1L);
+        CommandResponse result = commandService.changeStatus(1L, CommandStatus.DELIVERED);
 
         Assertions.assertNotNull(result);
-        Assertions.assertEquals(Command.DELIVERED, result.getStatus());
+        Assertions.assertEquals(CommandStatus.DELIVERED, result.getStatus());
 
-        verify(commandRepository, times(1)).findById(1L);
-        verify(commandRepository, times(1)).save(any(Command.class));
+        verify(commandRepository, times(0)).findById(1L);
+        verify(commandRepository, times(0)).save(any(Command.class));
+        verify(updateStockRepository, times(0)).save(any(UpdateStock.class));
     }
 
     @Test
-    public void CommandService_CommandDelivered_ReturnCommandNotFoundException() {
-        when(commandRepository.findById(1L)).thenReturn(Optional.empty());
+    public void CommandService_ChangeStatusToDelivered_ReturnCommandNotFoundException() {
+        when(commandRepository.existsById(1L)).thenReturn(false);
 
-        Assertions.assertThrows(CommandNotFoundException.class, () -> commandService.commandDelivered(1L));
+        Assertions.assertThrows(CommandNotFoundException.class, () -> commandService.changeStatus(1L, CommandStatus.DELIVERED));
 
-        verify(commandRepository, times(1)).findById(1L);
-        verify(commandRepository, times(0)).save(any(Command.class));
+        verify(commandRepository, times(1)).transition(eq(1L), anyCollection(), eq(CommandStatus.DELIVERED));
+        verify(commandRepository, times(0)).findById(1L);
+        verify(updateStockRepository, times(0)).save(any(UpdateStock.class));
     }
 
     @Test
-    public void CommandService_CommandDelivered_ReturnCommandCouldNotBeUpdatedException() {
-        Command commandInProgress = Command.builder()
-                .deliveryDate(LocalDate.now().plusDays(5))
-                .status(Command.DELIVERED)
-                .price(10.5)
-                .build();
+    public void CommandService_ChangeStatusToDelivered_ReturnCommandCouldNotBeUpdatedException() {
+        when(commandRepository.existsById(1L)).thenReturn(true);
 
-        when(commandRepository.findById(1L)).thenReturn(Optional.of(commandInProgress));
+        Assertions.assertThrows(CommandCouldNotBeUpdatedException.class, () -> commandService.changeStatus(1L, CommandStatus.DELIVERED));
 
-        Assertions.assertThrows(CommandCouldNotBeUpdatedException.class, () -> commandService.commandDelivered(1L));
+        verify(commandRepository, times(1)).transition(eq(1L), anyCollection(), eq(CommandStatus.DELIVERED));
+        verify(commandRepository, times(0)).findById(1L);
+        verify(updateStockRepository, times(0)).save(any(UpdateStock.class));
+    }
 
-        verify(commandRepository, times(1)).findById(1L);
-        verify(commandRepository, times(0)).save(any(Command.class));
+    private List<CommandLineRow> transitionedLines(Command command) {
+        if (command.getProducts() == null) {
+            return List.of(new CommandLineRow(1L, command.getDeliveryDate(), command.getStatus(), command.getPrice(),
+                    null, null, null, null, null, null));
+        }
+
+        List<CommandLineRow> rows = new ArrayList<>();
+        for (CommandProduct product : command.getProducts()) {
+            rows.add(new CommandLineRow(1L, command.getDeliveryDate(), command.getStatus(), command.getPrice(),
+                    (long) rows.size() + 1, product.getProductId(), product.getProductName(), product.getQuantity(),
+                    product.getUnitPrice(), product.getTotalPrice()));
+        }
+        return rows;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,42 @@
+package com.frcalderon.commands.service;
+
+import com.frcalderon.commands.exceptions.StatusTransitionNotSupportedException;
+import com.frcalderon.commands.model.CommandStatus;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CommandStateMachineTests {
+
+    @Test
+    public void CommandStateMachine_To_ReturnTransitionOfEveryStatus() {
+        for (CommandStatus status : CommandStatus.values()) {
+            CommandStateMachine.Transition transition = CommandStateMachine.to(status);
+
+            Assertions.assertThat(transition.to()).isEqualTo(status);
+            Assertions.assertThat(transition.from()).isNotEmpty().doesNotContain(status);
+        }
+    }
+
+    @Test
+    public void CommandStateMachine_To_ReturnStockEffects() {
+        Assertions.assertThat(CommandStateMachine.to(CommandStatus.CANCELLED).stockEffect())
+                .isEqualTo(CommandStateMachine.StockEffect.GIVE_BACK);
+        Assertions.assertThat(CommandStateMachine.to(CommandStatus.TO_DO).stockEffect())
+                .isEqualTo(CommandStateMachine.StockEffect.CONSUME);
+        Assertions.assertThat(CommandStateMachine.to(CommandStatus.DELIVERED).stockEffect())
+                .isEqualTo(CommandStateMachine.StockEffect.NONE);
+    }
+
+    @Test
+    public void CommandStateMachine_To_ReturnStatusTransitionNotSupportedException() {
+        Assertions.assertThatThrownBy(() -> CommandStateMachine.to(null))
+                .isInstanceOf(StatusTransitionNotSupportedException.class);
+    }
+
+    @Test
+    public void CommandStatus_FromLabel_ReturnStatusForLabelAndName() {
+        Assertions.assertThat(CommandStatus.fromLabel("IN PROGRESS")).isEqualTo(CommandStatus.IN_PROGRESS);
+        Assertions.assertThat(CommandStatus.fromLabel("in_progress")).isEqualTo(CommandStatus.IN_PROGRESS);
+        Assertions.assertThat(CommandStatus.fromCode(CommandStatus.CANCELLED.getCode())).isEqualTo(CommandStatus.CANCELLED);
+    }
+}
@@ -0,0 +1,127 @@
+package com.frcalderon.commands.service;
+
+import com.frcalderon.commands.controller.dto.CommandRequest;
+import com.frcalderon.commands.exceptions.AcceptedCommandNotFoundException;
+import com.frcalderon.commands.exceptions.CommandQueueFullException;
+import com.frcalderon.commands.model.Command;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CommandWriteBehindTests {
+
+    @Mock
+    private CommandService commandService;
+
+    @InjectMocks
+    private CommandWriteBehind commandWriteBehind;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(commandWriteBehind, "QUEUE_CAPACITY", 3);
+        ReflectionTestUtils.setField(commandWriteBehind, "GROUP_SIZE", 2);
+        ReflectionTestUtils.setField(commandWriteBehind, "LINGER", Duration.ZERO);
+        ReflectionTestUtils.setField(commandWriteBehind, "TRACKING_MAX_ENTRIES", 10);
+        ReflectionTestUtils.setField(commandWriteBehind, "RETRY_MAX_ATTEMPTS", 1);
+        ReflectionTestUtils.setField(commandWriteBehind, "RETRY_INITIAL_BACKOFF", Duration.ZERO);
+        commandWriteBehind.init();
+
+        lenient().when(commandService.newCommand(any(CommandRequest.class))).thenAnswer(invocation -> Command.builder().build());
+    }
+
+    @Test
+    public void CommandWriteBehind_Accept_ReturnCommandQueueFullException() {
+        for (int i = 0; i < 3; i++) {
+            commandWriteBehind.accept(CommandRequest.builder().build());
+        }
+
+        Assertions.assertThatThrownBy(() -> commandWriteBehind.accept(CommandRequest.builder().build()))
+                .isInstanceOf(CommandQueueFullException.class);
+    }
+
+    @Test
+    public void CommandWriteBehind_WriteGroup_ReturnGroupsTrackedAsCreatedOrFailed() throws InterruptedException {
+        AcceptedCommand first = commandWriteBehind.accept(CommandRequest.builder().build());
+        AcceptedCommand second = commandWriteBehind.accept(CommandRequest.builder().build());
+        AcceptedCommand third = commandWriteBehind.accept(CommandRequest.builder().build());
+        when(commandService.createAcceptedCommands(anyList())).thenReturn(
+                List.of(CommandBatchResult.created(0, 10L), CommandBatchResult.rejected(1, "Could not save command")),
+                List.of(CommandBatchResult.created(0, 11L))
+        );
+
+        Assertions.assertThat(commandWriteBehind.getAccepted(first.trackingId()).state()).isEqualTo(AcceptedCommand.State.QUEUED);
+
+        Assertions.assertThat(commandWriteBehind.writeGroup(Duration.ZERO)).isEqualTo(2);
+        Assertions.assertThat(commandWriteBehind.writeGroup(Duration.ZERO)).isEqualTo(1);
+        Assertions.assertThat(commandWriteBehind.writeGroup(Duration.ZERO)).isZero();
+
+        Assertions.assertThat(commandWriteBehind.getAccepted(first.trackingId()))
+                .isEqualTo(AcceptedCommand.created(first.trackingId(), 10L));
+        Assertions.assertThat(commandWriteBehind.getAccepted(second.trackingId()).state()).isEqualTo(AcceptedCommand.State.FAILED);
+        Assertions.assertThat(commandWriteBehind.getAccepted(third.trackingId()).commandId()).isEqualTo(11L);
+        verify(commandService, times(2)).createAcceptedCommands(anyList());
+    }
+
+    @Test
+    public void CommandWriteBehind_WriteGroup_ReturnFailedGroupRetried() throws InterruptedException {
+        ReflectionTestUtils.setField(commandWriteBehind, "RETRY_MAX_ATTEMPTS", 3);
+        AcceptedCommand first = commandWriteBehind.accept(CommandRequest.builder().build());
+        AcceptedCommand second = commandWriteBehind.accept(CommandRequest.builder().build());
+        when(commandService.createAcceptedCommands(anyList())).thenReturn(
+                List.of(CommandBatchResult.rejected(0, "Connection reset"), CommandBatchResult.rejected(1, "Connection reset")),
+                List.of(CommandBatchResult.created(0, 10L), CommandBatchResult.created(1, 11L))
+        );
+
+        commandWriteBehind.writeGroup(Duration.ZERO);
+
+        Assertions.assertThat(commandWriteBehind.getAccepted(first.trackingId()).commandId()).isEqualTo(10L);
+        Assertions.assertThat(commandWriteBehind.getAccepted(second.trackingId()).commandId()).isEqualTo(11L);
+        verify(commandService, times(2)).createAcceptedCommands(anyList());
+    }
+
+    @Test
+    public void CommandWriteBehind_WriteGroup_ReturnOnlyCommandsStillFailingAloneMarkedFailed() throws InterruptedException {
+        ReflectionTestUtils.setField(commandWriteBehind, "RETRY_MAX_ATTEMPTS", 2);
+        AcceptedCommand first = commandWriteBehind.accept(CommandRequest.builder().build());
+        AcceptedCommand second = commandWriteBehind.accept(CommandRequest.builder().build());
+        List<CommandBatchResult> groupFailed = List.of(
+                CommandBatchResult.rejected(0, "Could not save command"), CommandBatchResult.rejected(1, "Could not save command"));
+        when(commandService.createAcceptedCommands(anyList())).thenReturn(
+                groupFailed,
+                groupFailed,
+                List.of(CommandBatchResult.created(0, 10L)),
+                List.of(CommandBatchResult.rejected(0, "Could not save command"))
+        );
+
+        commandWriteBehind.writeGroup(Duration.ZERO);
+
+        Assertions.assertThat(commandWriteBehind.getAccepted(first.trackingId()))
+                .isEqualTo(AcceptedCommand.created(first.trackingId(), 10L));
+        Assertions.assertThat(commandWriteBehind.getAccepted(second.trackingId()))
+                .isEqualTo(AcceptedCommand.failed(second.trackingId(), "Could not save command"));
+        verify(commandService, times(4)).createAcceptedCommands(anyList());
+    }
+
+    @Test
+    public void CommandWriteBehind_GetAccepted_ReturnAcceptedCommandNotFoundException() {
+        Assertions.assertThatThrownBy(() -> commandWriteBehind.getAccepted(UUID.randomUUID()))
+                .isInstanceOf(AcceptedCommandNotFoundException.class);
+    }
+}
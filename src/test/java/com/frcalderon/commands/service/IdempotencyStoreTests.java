@@ -0,0 +1,204 @@
+package com.frcalderon.commands.service;
+
+import com.frcalderon.commands.controller.dto.CommandResponse;
+import com.frcalderon.commands.exceptions.CommandNotFoundException;
+import com.frcalderon.commands.exceptions.IdempotencyKeyInProgressException;
+import com.frcalderon.commands.exceptions.IdempotencyKeyLimitException;
+import com.frcalderon.commands.exceptions.IdempotencyKeyReusedException;
+import com.frcalderon.commands.model.CommandStatus;
+import com.frcalderon.commands.model.IdempotencyRecord;
+import com.frcalderon.commands.repository.IdempotencyRecordRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@DataJpaTest(properties = {
+        "ms-commands.idempotency.ttl=10m",
+        "ms-commands.idempotency.lease=1m",
+        "ms-commands.idempotency.max-keys-per-subject=2"
+})
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+@Import({JacksonAutoConfiguration.class, IdempotencyStoreTests.Config.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotencyStoreTests {
+
+    private static final MutableClock clock = new MutableClock();
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @TestConfiguration
+    static class Config {
+
+        @Bean
+        IdempotencyStore idempotencyStore() {
+            return new IdempotencyStore(clock);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        idempotencyRecordRepository.deleteAll();
+    }
+
+    @Test
+    public void IdempotencyStore_Execute_ReturnStoredResponseUntilExpired() {
+        AtomicInteger calls = new AtomicInteger();
+
+        Assertions.assertThat(idempotencyStore.execute("key", "request", Integer.class, calls::incrementAndGet)).isEqualTo(1);
+        Assertions.assertThat(idempotencyStore.execute("key", "request", Integer.class, calls::incrementAndGet)).isEqualTo(1);
+
+        clock.advance(Duration.ofMinutes(11));
+
+        Assertions.assertThat(idempotencyStore.execute("key", "request", Integer.class, calls::incrementAndGet)).isEqualTo(2);
+    }
+
+    @Test
+    public void IdempotencyStore_Execute_ReturnStoredResponseReadBackFromTheDatabase() {
+        CommandResponse response = CommandResponse.builder().id(1L).status(CommandStatus.CANCELLED).price(10.5).build();
+
+        idempotencyStore.execute("key", "request", CommandResponse.class, () -> response);
+
+        Assertions.assertThat(idempotencyRecordRepository.findBySubjectAndIdempotencyKey("", "key"))
+                .get()
+                .extracting(IdempotencyRecord::getResponse)
+                .isNotNull();
+        Assertions.assertThat(idempotencyStore.execute("key", "request", CommandResponse.class, () -> null)).isEqualTo(response);
+    }
+
+    @Test
+    public void IdempotencyStore_Execute_ReturnKeysScopedToTheCaller() {
+        AtomicInteger calls = new AtomicInteger();
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("client-a", null));
+        Assertions.assertThat(idempotencyStore.execute("key", "request", Integer.class, calls::incrementAndGet)).isEqualTo(1);
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("client-b", null));
+        Assertions.assertThat(idempotencyStore.execute("key", "request", Integer.class, calls::incrementAndGet)).isEqualTo(2);
+        Assertions.assertThat(idempotencyRecordRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    public void IdempotencyStore_Execute_ReturnUnprocessableForDifferentRequest() {
+        idempotencyStore.execute("key", "request", String.class, () -> "done");
+
+        Assertions.assertThatThrownBy(() -> idempotencyStore.execute("key", "other request", String.class, () -> "done"))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+    }
+
+    @Test
+    public void IdempotencyStore_Execute_ReturnRetryableAfterFailure() {
+        Assertions.assertThatThrownBy(() -> idempotencyStore.execute("key", "request", String.class, () -> {
+            throw new CommandNotFoundException();
+        })).isInstanceOf(CommandNotFoundException.class);
+
+        Assertions.assertThat(idempotencyStore.execute("key", "request", String.class, () -> "done")).isEqualTo("done");
+    }
+
+    @Test
+    public void IdempotencyStore_Execute_ReturnConflictWhileInProgress() {
+        Assertions.assertThatThrownBy(() -> idempotencyStore.execute("key", "request", String.class,
+                () -> idempotencyStore.execute("key", "request", String.class, () -> "nested")))
+                .isInstanceOf(IdempotencyKeyInProgressException.class);
+        Assertions.assertThat(idempotencyRecordRepository.count()).isZero();
+    }
+
+    @Test
+    public void IdempotencyStore_Execute_ReturnKeyTakenOverAfterPendingLeaseExpired() {
+        idempotencyRecordRepository.save(IdempotencyRecord.builder()
+                .subject("")
+                .idempotencyKey("key")
+                .fingerprint("left by a replica that died")
+                .expiresAt(clock.instant().minusSeconds(1))
+                .build());
+
+        Assertions.assertThat(idempotencyStore.execute("key", "request", String.class, () -> "done")).isEqualTo("done");
+        Assertions.assertThat(idempotencyRecordRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void IdempotencyStore_Execute_ReturnTooManyKeysOverTheSubjectCap() {
+        idempotencyStore.execute("a", "request", String.class, () -> "done");
+        idempotencyStore.execute("b", "request", String.class, () -> "done");
+
+        Assertions.assertThatThrownBy(() -> idempotencyStore.execute("c", "request", String.class, () -> "done"))
+                .isInstanceOf(IdempotencyKeyLimitException.class);
+        Assertions.assertThat(idempotencyStore.execute("a", "request", String.class, () -> "again")).isEqualTo("done");
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("client-b", null));
+        Assertions.assertThat(idempotencyStore.execute("c", "request", String.class, () -> "done")).isEqualTo("done");
+
+        clock.advance(Duration.ofMinutes(11));
+        SecurityContextHolder.clearContext();
+        Assertions.assertThat(idempotencyStore.execute("c", "request", String.class, () -> "done")).isEqualTo("done");
+    }
+
+    @Test
+    public void IdempotencyStore_PurgeExpired_ReturnExpiredRecordsDeleted() {
+        idempotencyStore.execute("a", "request", String.class, () -> "done");
+        clock.advance(Duration.ofMinutes(11));
+        idempotencyStore.execute("b", "request", String.class, () -> "done");
+
+        Assertions.assertThat(idempotencyStore.purgeExpired()).isEqualTo(1);
+        Assertions.assertThat(idempotencyRecordRepository.findAll())
+                .extracting(IdempotencyRecord::getIdempotencyKey)
+                .containsExactly("b");
+    }
+
+    @Test
+    public void IdempotencyStore_Execute_ReturnCallResultWithoutKey() {
+        AtomicInteger calls = new AtomicInteger();
+
+        idempotencyStore.execute(null, "request", Integer.class, calls::incrementAndGet);
+        idempotencyStore.execute(null, "request", Integer.class, calls::incrementAndGet);
+
+        Assertions.assertThat(calls.get()).isEqualTo(2);
+        Assertions.assertThat(idempotencyRecordRepository.count()).isZero();
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2023-06-15T10:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("Z");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
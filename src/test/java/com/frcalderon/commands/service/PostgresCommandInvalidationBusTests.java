@@ -0,0 +1,79 @@
+package com.frcalderon.commands.service;
+
+import org.assertj.core.api.Assertions;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.LongStream;
+
+public class PostgresCommandInvalidationBusTests {
+
+    private final JdbcDataSource dataSource = new JdbcDataSource();
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource.setURL("jdbc:h2:mem:invalidation;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists notification (channel varchar(64), payload varchar(8000))");
+        jdbcTemplate.execute("delete from notification");
+        jdbcTemplate.execute("create alias if not exists pg_notify for \"" + PostgresCommandInvalidationBusTests.class.getName() + ".notify\"");
+    }
+
+    // stands in for pg_notify, recording the notification in the caller's transaction
+    public static String notify(Connection connection, String channel, String payload) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("insert into notification values (?, ?)")) {
+            statement.setString(1, channel);
+            statement.setString(2, payload);
+            statement.executeUpdate();
+        }
+        return "";
+    }
+
+    @Test
+    public void PostgresCommandInvalidationBus_Publish_ReturnNotificationSentOnlyWhenTheWriteCommits() {
+        PostgresCommandInvalidationBus bus = new PostgresCommandInvalidationBus(dataSource, "command_invalidation");
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            bus.publish(List.of(1L, 2L));
+            status.setRollbackOnly();
+        });
+
+        Assertions.assertThat(jdbcTemplate.queryForList("select payload from notification", String.class)).isEmpty();
+
+        transactionTemplate.executeWithoutResult(status -> bus.publish(List.of(3L, 4L)));
+
+        Assertions.assertThat(jdbcTemplate.queryForList("select payload from notification", String.class)).containsExactly("3,4");
+    }
+
+    @Test
+    public void PostgresCommandInvalidationBus_Payloads_ReturnIdsChunkedUnderThePayloadLimit() {
+        List<Long> ids = LongStream.range(0, PostgresCommandInvalidationBus.IDS_PER_NOTIFICATION + 1)
+                .map(id -> Long.MAX_VALUE - id)
+                .boxed()
+                .toList();
+
+        List<String> payloads = PostgresCommandInvalidationBus.payloads(ids);
+
+        Assertions.assertThat(payloads).hasSize(2);
+        Assertions.assertThat(payloads).allSatisfy(payload -> Assertions.assertThat(payload.length()).isLessThan(8000));
+        Assertions.assertThat(payloads.stream().flatMap(payload -> PostgresCommandInvalidationBus.parse(payload).stream()))
+                .containsExactlyElementsOf(ids);
+    }
+
+    @Test
+    public void PostgresCommandInvalidationBus_Payloads_ReturnNothingForNoIds() {
+        Assertions.assertThat(PostgresCommandInvalidationBus.payloads(List.of())).isEmpty();
+        Assertions.assertThat(PostgresCommandInvalidationBus.parse("")).isEmpty();
+    }
+}
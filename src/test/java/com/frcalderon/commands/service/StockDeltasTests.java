@@ -0,0 +1,43 @@
+package com.frcalderon.commands.service;
+
+import com.frcalderon.commands.model.UpdateStockRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+class StockDeltasTests {
+
+    @Test
+    public void StockDeltas_Accumulate_ReturnNetAdditionsAndConsumptions() {
+        Map<Long, Integer> deltas = new TreeMap<>();
+
+        StockDeltas.accumulate(deltas, List.of(
+                UpdateStockRequest.builder().productId(1L).stock(2).build(),
+                UpdateStockRequest.builder().productId(2L).stock(3).build()
+        ), 1);
+        StockDeltas.accumulate(deltas, List.of(
+                UpdateStockRequest.builder().productId(1L).stock(2).build(),
+                UpdateStockRequest.builder().productId(2L).stock(1).build(),
+                UpdateStockRequest.builder().productId(3L).stock(4).build()
+        ), -1);
+
+        Assertions.assertEquals(List.of(UpdateStockRequest.builder().productId(2L).stock(2).build()),
+                StockDeltas.additions(deltas));
+        Assertions.assertEquals(List.of(UpdateStockRequest.builder().productId(3L).stock(4).build()),
+                StockDeltas.consumptions(deltas));
+    }
+
+    @Test
+    public void StockDeltas_Accumulate_ReturnNothingWhenQuantitiesCancelOut() {
+        Map<Long, Integer> deltas = new TreeMap<>();
+
+        StockDeltas.accumulate(deltas, List.of(UpdateStockRequest.builder().productId(1L).stock(5).build()), 1);
+        StockDeltas.accumulate(deltas, List.of(UpdateStockRequest.builder().productId(1L).stock(5).build()), -1);
+
+        Assertions.assertTrue(StockDeltas.additions(deltas).isEmpty());
+        Assertions.assertTrue(StockDeltas.consumptions(deltas).isEmpty());
+    }
+}
@@ -0,0 +1,43 @@
+package com.frcalderon.commands.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class UpdateStockLanesTests {
+
+    @Test
+    public void UpdateStockLanes_Partition_ReturnOneLanePerDisjointProductSet() {
+        Map<String, Set<Long>> rows = Map.of(
+                "row1", Set.of(1L),
+                "row2", Set.of(2L),
+                "row3", Set.of(1L, 3L),
+                "row4", Set.of(3L),
+                "row5", Set.of()
+        );
+
+        List<List<String>> lanes = UpdateStockLanes.partition(List.of("row1", "row2", "row3", "row4", "row5"), rows::get);
+
+        Assertions.assertEquals(3, lanes.size());
+        Assertions.assertEquals(List.of("row1", "row3", "row4"), lanes.get(0));
+        Assertions.assertEquals(List.of("row2"), lanes.get(1));
+        Assertions.assertEquals(List.of("row5"), lanes.get(2));
+    }
+
+    @Test
+    public void UpdateStockLanes_Partition_ReturnRowsInOriginalOrderWhenLanesMerge() {
+        Map<String, Set<Long>> rows = Map.of(
+                "row1", Set.of(1L),
+                "row2", Set.of(2L),
+                "row3", Set.of(1L, 2L)
+        );
+
+        List<List<String>> lanes = UpdateStockLanes.partition(List.of("row1", "row2", "row3"), rows::get);
+
+        Assertions.assertEquals(1, lanes.size());
+        Assertions.assertEquals(List.of("row1", "row2", "row3"), lanes.get(0));
+    }
+}
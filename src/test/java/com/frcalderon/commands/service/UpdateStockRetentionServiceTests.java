@@ -0,0 +1,104 @@
+package com.frcalderon.commands.service;
+
+import com.frcalderon.commands.model.UpdateStock;
+import com.frcalderon.commands.model.UpdateStockArchive;
+import com.frcalderon.commands.repository.UpdateStockArchiveRepository;
+import com.frcalderon.commands.repository.UpdateStockRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.context.annotation.Import;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+@Import(UpdateStockRetentionService.class)
+public class UpdateStockRetentionServiceTests {
+
+    @Autowired
+    private UpdateStockRetentionService updateStockRetentionService;
+
+    @Autowired
+    private UpdateStockRepository updateStockRepository;
+
+    @Autowired
+    private UpdateStockArchiveRepository updateStockArchiveRepository;
+
+    private UpdateStock oldSent1;
+
+    private UpdateStock oldSent2;
+
+    private UpdateStock recentSent;
+
+    private UpdateStock unsent;
+
+    @BeforeEach
+    public void init() {
+        Instant now = Instant.now();
+
+        oldSent1 = updateStockRepository.save(updateStock(true, now.minus(10, ChronoUnit.DAYS)));
+        oldSent2 = updateStockRepository.save(updateStock(true, null));
+        recentSent = updateStockRepository.save(updateStock(true, now.minus(1, ChronoUnit.HOURS)));
+        unsent = updateStockRepository.save(updateStock(false, null));
+
+        updateStockRetentionService.setMAX_AGE(Duration.ofDays(7));
+        updateStockRetentionService.setCHUNK_SIZE(1);
+    }
+
+    @Test
+    public void UpdateStockRetentionService_PurgeSentUpdateStocks_ReturnOldRowsArchived() {
+        updateStockRetentionService.setMODE(UpdateStockRetentionService.ARCHIVE_MODE);
+
+        int purged = updateStockRetentionService.purgeSentUpdateStocks();
+
+        Assertions.assertThat(purged).isEqualTo(2);
+        Assertions.assertThat(updateStockRepository.findAll()).containsExactlyInAnyOrder(recentSent, unsent);
+        Assertions.assertThat(updateStockArchiveRepository.findAll())
+                .extracting(UpdateStockArchive::getId)
+                .containsExactlyInAnyOrder(oldSent1.getId(), oldSent2.getId());
+        Assertions.assertThat(updateStockArchiveRepository.findById(oldSent1.getId())).get()
+                .satisfies(archived -> {
+                    Assertions.assertThat(archived.getRequest()).isEqualTo(oldSent1.getRequest());
+                    Assertions.assertThat(archived.getUri()).isEqualTo(oldSent1.getUri());
+                    Assertions.assertThat(archived.getSentAt()).isCloseTo(oldSent1.getSentAt(), Assertions.within(1, ChronoUnit.MILLIS));
+                    Assertions.assertThat(archived.getArchivedAt()).isNotNull();
+                });
+    }
+
+    @Test
+    public void UpdateStockRetentionService_PurgeSentUpdateStocks_ReturnOldRowsDeleted() {
+        updateStockRetentionService.setMODE(UpdateStockRetentionService.DELETE_MODE);
+
+        int purged = updateStockRetentionService.purgeSentUpdateStocks();
+
+        Assertions.assertThat(purged).isEqualTo(2);
+        Assertions.assertThat(updateStockRepository.findAll()).containsExactlyInAnyOrder(recentSent, unsent);
+        Assertions.assertThat(updateStockArchiveRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    public void UpdateStockRetentionService_PurgeSentUpdateStocks_ReturnNothingWhenDisabled() {
+        updateStockRetentionService.setMODE(UpdateStockRetentionService.NONE_MODE);
+
+        int purged = updateStockRetentionService.purgeSentUpdateStocks();
+
+        Assertions.assertThat(purged).isEqualTo(0);
+        Assertions.assertThat(updateStockRepository.findAll()).hasSize(4);
+    }
+
+    private UpdateStock updateStock(boolean sent, Instant sentAt) {
+        return UpdateStock.builder()
+                .request("this is a request")
+                .uri("this is a uri")
+                .sent(sent)
+                .sentAt(sentAt)
+                .build();
+    }
+}
@@ -0,0 +1,482 @@
+package com.frcalderon.commands.service;
+
+import com.frcalderon.commands.model.UpdateStock;
+import com.frcalderon.commands.model.UpdateStockHold;
+import com.frcalderon.commands.repository.UpdateStockHoldRepository;
+import com.frcalderon.commands.repository.UpdateStockRepository;
+import com.frcalderon.commands.stub.ProductsStockStub;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+@SpringBootTest
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+class UpdateStockServiceTests {
+
+    private static final ProductsStockStub productsStockStub = startStub();
+
+    @Autowired
+    private UpdateStockService updateStockService;
+
+    @Autowired
+    private UpdateStockRepository updateStockRepository;
+
+    @Autowired
+    private UpdateStockHoldRepository updateStockHoldRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("ms-commands.ms-products.base-url", productsStockStub::getBaseUrl);
+        registry.add("ms-commands.update-stock.sweep-cron", () -> "-");
+        registry.add("ms-commands.update-stock.coalesce", () -> "false");
+        registry.add("ms-commands.update-stock.transport", () -> UpdateStockService.BATCH_TRANSPORT);
+        registry.add("ms-commands.update-stock.batch.max-rows", () -> "2");
+        registry.add("ms-commands.update-stock.retry.max-attempts", () -> "2");
+        registry.add("ms-commands.update-stock.retry.initial-backoff", () -> "0s");
+    }
+
+    @AfterAll
+    static void stopStub() {
+        productsStockStub.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        updateStockRepository.deleteAll();
+        updateStockHoldRepository.deleteAll();
+        productsStockStub.reset();
+    }
+
+    @Test
+    public void UpdateStockService_SendBatches_ReturnRowsSentPerEntry() {
+        productsStockStub.failProduct(3L);
+
+        List<UpdateStock> updateStocks = updateStockRepository.saveAll(List.of(
+                consume(1L), consume(2L), consume(3L), consume(4L), consume(5L)
+        ));
+
+        updateStockService.sendRequestToUpdateStock();
+
+        Assertions.assertThat(productsStockStub.getSingleRequests()).isEmpty();
+        Assertions.assertThat(productsStockStub.getBatchRequests()).hasSize(3);
+        Assertions.assertThat(productsStockStub.getBatchRequests())
+                .allSatisfy(envelope -> Assertions.assertThat(envelope.get("entries").size()).isLessThanOrEqualTo(2));
+
+        Assertions.assertThat(updateStockRepository.findAllBySent(false))
+                .extracting(UpdateStock::getId)
+                .containsExactly(updateStocks.get(2).getId());
+    }
+
+    @Test
+    public void UpdateStockService_SendBatches_ReturnLaterRowsOfFailedProductHeldBack() {
+        productsStockStub.failProduct(1L);
+
+        updateStockRepository.saveAll(List.of(consume(1L), consume(1L), consume(1L)));
+
+        updateStockService.sendRequestToUpdateStock();
+
+        Assertions.assertThat(productsStockStub.getBatchRequests()).hasSize(1);
+        Assertions.assertThat(updateStockRepository.findAllBySent(false)).hasSize(3);
+    }
+
+    @Test
+    public void UpdateStockService_SendBatches_ReturnFailedRowRetriedThenDead() {
+        productsStockStub.failProduct(1L);
+
+        UpdateStock updateStock = updateStockRepository.save(consume(1L));
+
+        updateStockService.sendRequestToUpdateStock();
+
+        UpdateStock retried = updateStockRepository.findById(updateStock.getId()).get();
+        Assertions.assertThat(retried.getAttempts()).isEqualTo(1);
+        Assertions.assertThat(retried.getNextAttemptAt()).isNotNull();
+        Assertions.assertThat(retried.getLastError()).isEqualTo("Product not available");
+        Assertions.assertThat(retried.isDead()).isFalse();
+
+        updateStockService.sendRequestToUpdateStock();
+
+        UpdateStock dead = updateStockRepository.findById(updateStock.getId()).get();
+        Assertions.assertThat(dead.getAttempts()).isEqualTo(2);
+        Assertions.assertThat(dead.isDead()).isTrue();
+        Assertions.assertThat(dead.isSent()).isFalse();
+
+        updateStockService.sendRequestToUpdateStock();
+
+        Assertions.assertThat(productsStockStub.getBatchRequests()).hasSize(2);
+    }
+
+    @Test
+    public void UpdateStockService_SendBatches_ReturnLaterRowsHeldBehindDeferredRowAcrossDrains() {
+        productsStockStub.failProduct(1L);
+
+        UpdateStock consume = updateStockRepository.save(consume(1L));
+        UpdateStock add = updateStockRepository.save(add(1L));
+
+        updateStockService.sendRequestToUpdateStock();
+
+        Assertions.assertThat(productsStockStub.getBatchRequests()).hasSize(1);
+        Assertions.assertThat(productsStockStub.getBatchRequests().get(0).get("entries").size()).isEqualTo(1);
+
+        productsStockStub.recoverProduct(1L);
+        deferUntil(consume.getId(), Instant.now().plusSeconds(3600));
+
+        updateStockService.sendRequestToUpdateStock();
+
+        Assertions.assertThat(productsStockStub.getBatchRequests()).hasSize(1);
+        Assertions.assertThat(updateStockRepository.findById(add.getId()).get().isSent()).isFalse();
+
+        deferUntil(consume.getId(), Instant.now().minusSeconds(1));
+
+        updateStockService.sendRequestToUpdateStock();
+
+        Assertions.assertThat(productsStockStub.getBatchRequests()).hasSize(3);
+        Assertions.assertThat(productsStockStub.getBatchRequests().subList(1, 3))
+                .extracting(envelope -> envelope.get("entries").get(0).get("uri").asText())
+                .containsExactly("stock/consume", "stock/add");
+        Assertions.assertThat(updateStockRepository.findAllBySent(false)).isEmpty();
+        Assertions.assertThat(updateStockHoldRepository.count()).isZero();
+    }
+
+    @Test
+    public void UpdateStockService_SendBatches_ReturnLaterRowsHeldBehindDeadRow() {
+        productsStockStub.failProduct(1L);
+
+        UpdateStock dead = updateStockRepository.save(consume(1L));
+
+        updateStockService.sendRequestToUpdateStock();
+        updateStockService.sendRequestToUpdateStock();
+
+        Assertions.assertThat(updateStockRepository.findById(dead.getId()).get().isDead()).isTrue();
+
+        productsStockStub.recoverProduct(1L);
+        updateStockRepository.saveAll(List.of(add(1L), consume(2L)));
+
+        updateStockService.sendRequestToUpdateStock();
+
+        Assertions.assertThat(productsStockStub.getBatchRequests()).hasSize(3);
+        Assertions.assertThat(productsStockStub.getBatchRequests().get(2).get("entries").size()).isEqualTo(1);
+        Assertions.assertThat(updateStockRepository.findAllBySent(false)).hasSize(2);
+        Assertions.assertThat(updateStockHoldRepository.findAll())
+                .extracting(UpdateStockHold::getUpdateStockId)
+                .containsExactly(dead.getId());
+    }
+
+    @Test
+    public void UpdateStockService_SendBatches_ReturnRowsPastHoldCapLeftForNextDrain() {
+        ReflectionTestUtils.setField(updateStockService, "HOLD_MAX_ROWS", 1);
+        try {
+            productsStockStub.failProduct(1L);
+            productsStockStub.failProduct(2L);
+
+            List<UpdateStock> failed = updateStockRepository.saveAll(List.of(consume(1L), consume(2L)));
+
+            updateStockService.sendRequestToUpdateStock();
+
+            failed.forEach(updateStock -> deferUntil(updateStock.getId(), Instant.now().plusSeconds(3600)));
+            UpdateStock later = updateStockRepository.save(consume(3L));
+
+            updateStockService.sendRequestToUpdateStock();
+
+            Assertions.assertThat(updateStockHoldRepository.count()).isEqualTo(2);
+            Assertions.assertThat(updateStockRepository.findById(later.getId()).get().isSent()).isFalse();
+
+            ReflectionTestUtils.setField(updateStockService, "HOLD_MAX_ROWS", 10000);
+
+            updateStockService.sendRequestToUpdateStock();
+
+            Assertions.assertThat(updateStockRepository.findById(later.getId()).get().isSent()).isTrue();
+        } finally {
+            ReflectionTestUtils.setField(updateStockService, "HOLD_MAX_ROWS", 10000);
+        }
+    }
+
+    @Test
+    public void UpdateStockService_Coalesce_ReturnNetDeltasSummingToZeroSkipped() {
+        ReflectionTestUtils.setField(updateStockService, "COALESCE", true);
+        try {
+            updateStockRepository.saveAll(List.of(consume(1L), add(1L), consume(2L), add(2L)));
+
+            updateStockService.sendRequestToUpdateStock();
+
+            Assertions.assertThat(productsStockStub.getBatchRequests()).isEmpty();
+            Assertions.assertThat(productsStockStub.getSingleRequests()).isEmpty();
+            Assertions.assertThat(updateStockRepository.findAllBySent(false)).isEmpty();
+        } finally {
+            ReflectionTestUtils.setField(updateStockService, "COALESCE", false);
+        }
+    }
+
+    @Test
+    public void UpdateStockService_Coalesce_ReturnSourceRowsMarkedSentTogether() {
+        ReflectionTestUtils.setField(updateStockService, "COALESCE", true);
+        try {
+            List<UpdateStock> updateStocks = updateStockRepository.saveAll(List.of(
+                    consume(1L), consume(1L), add(2L), consume(3L), add(3L), add(3L)
+            ));
+
+            updateStockService.sendRequestToUpdateStock();
+
+            Assertions.assertThat(productsStockStub.getBatchRequests()).hasSize(1);
+            Assertions.assertThat(productsStockStub.getBatchRequests().get(0).get("entries"))
+                    .extracting(entry -> entry.get("uri").asText() + " " + entry.get("request"))
+                    .containsExactly(
+                            "stock/add [{\"productId\":2,\"stock\":1},{\"productId\":3,\"stock\":1}]",
+                            "stock/consume [{\"productId\":1,\"stock\":2}]"
+                    );
+
+            List<UpdateStock> sent = updateStockRepository.findAllById(updateStocks.stream().map(UpdateStock::getId).toList());
+            Assertions.assertThat(sent).allMatch(UpdateStock::isSent);
+            Assertions.assertThat(sent).extracting(UpdateStock::getSentAt).containsOnly(sent.get(0).getSentAt());
+        } finally {
+            ReflectionTestUtils.setField(updateStockService, "COALESCE", false);
+        }
+    }
+
+    @Test
+    public void UpdateStockService_Coalesce_ReturnFailedNetRowRetriedWithNetQuantity() {
+        ReflectionTestUtils.setField(updateStockService, "COALESCE", true);
+        try {
+            productsStockStub.failProduct(1L);
+
+            List<UpdateStock> updateStocks = updateStockRepository.saveAll(List.of(consume(1L), consume(1L), add(1L), consume(1L)));
+
+            updateStockService.sendRequestToUpdateStock();
+
+            Assertions.assertThat(updateStockRepository.findAllBySent(false))
+                    .extracting(UpdateStock::getId)
+                    .containsExactly(updateStocks.get(0).getId());
+
+            productsStockStub.recoverProduct(1L);
+
+            updateStockService.sendRequestToUpdateStock();
+
+            Assertions.assertThat(productsStockStub.getBatchRequests()).hasSize(2);
+            Assertions.assertThat(productsStockStub.getBatchRequests())
+                    .extracting(envelope -> envelope.get("entries").get(0).get("request").toString())
+                    .containsOnly("[{\"productId\":1,\"stock\":2}]");
+            Assertions.assertThat(updateStockRepository.findAllBySent(false)).isEmpty();
+            Assertions.assertThat(updateStockHoldRepository.count()).isZero();
+        } finally {
+            ReflectionTestUtils.setField(updateStockService, "COALESCE", false);
+        }
+    }
+
+    @Test
+    public void UpdateStockService_Coalesce_ReturnFailedNetRowKeptInPlaceOfFirstSourceRow() {
+        ReflectionTestUtils.setField(updateStockService, "COALESCE", true);
+        try {
+            productsStockStub.failProduct(1L);
+
+            List<UpdateStock> updateStocks = updateStockRepository.saveAll(List.of(consume(1L), consume(2L), consume(1L)));
+
+            updateStockService.sendRequestToUpdateStock();
+
+            List<UpdateStock> unsent = updateStockRepository.findAllBySent(false);
+            Assertions.assertThat(unsent).extracting(UpdateStock::getId).containsExactly(updateStocks.get(0).getId());
+            Assertions.assertThat(unsent.get(0).getRequest()).contains("\"productId\":1,\"stock\":2").contains("\"productId\":2");
+            Assertions.assertThat(unsent.get(0).getAttempts()).isEqualTo(1);
+            Assertions.assertThat(updateStockRepository.count()).isEqualTo(3);
+        } finally {
+            ReflectionTestUtils.setField(updateStockService, "COALESCE", false);
+        }
+    }
+
+    @Test
+    public void UpdateStockService_Coalesce_ReturnFailedNetRowsBeyondSourcesKeptAsNewRow() {
+        ReflectionTestUtils.setField(updateStockService, "COALESCE", true);
+        try {
+            productsStockStub.failProduct(1L);
+            productsStockStub.failProduct(2L);
+
+            UpdateStock mixed = updateStockRepository.save(UpdateStock.builder()
+                    .request("[{\"productId\":1,\"stock\":1},{\"productId\":2,\"stock\":-1}]")
+                    .uri("stock/add")
+                    .sent(false)
+                    .build());
+
+            updateStockService.sendRequestToUpdateStock();
+
+            List<UpdateStock> unsent = updateStockRepository.findAllBySent(false);
+            Assertions.assertThat(unsent).extracting(UpdateStock::getUri).containsExactlyInAnyOrder("stock/add", "stock/consume");
+            Assertions.assertThat(unsent).extracting(UpdateStock::getId).contains(mixed.getId());
+            Assertions.assertThat(unsent).allSatisfy(updateStock -> {
+                Assertions.assertThat(updateStock.getAttempts()).isEqualTo(1);
+                Assertions.assertThat(updateStock.getClaimOwner()).isNull();
+            });
+        } finally {
+            ReflectionTestUtils.setField(updateStockService, "COALESCE", false);
+        }
+    }
+
+    @Test
+    public void UpdateStockService_SendLanes_ReturnRowsOfEachProductSentInOrder() {
+        ReflectionTestUtils.setField(updateStockService, "TRANSPORT", UpdateStockService.SINGLE_TRANSPORT);
+        ReflectionTestUtils.setField(updateStockService, "COALESCE", true);
+        try {
+            holdBack(9L);
+            updateStockRepository.saveAll(List.of(consume(1L), add(2L), add(1L), consume(2L), consume(1L), add(2L)));
+            productsStockStub.delay(Duration.ofMillis(50));
+
+            updateStockService.sendRequestToUpdateStock();
+
+            Assertions.assertThat(productsStockStub.getSingleCalls())
+                    .filteredOn(call -> call.contains("\"productId\":1"))
+                    .extracting(call -> call.split(" ")[0])
+                    .containsExactly("stock/consume", "stock/add", "stock/consume");
+            Assertions.assertThat(productsStockStub.getSingleCalls())
+                    .filteredOn(call -> call.contains("\"productId\":2"))
+                    .extracting(call -> call.split(" ")[0])
+                    .containsExactly("stock/add", "stock/consume", "stock/add");
+            Assertions.assertThat(updateStockRepository.findAllBySent(false)).hasSize(2);
+        } finally {
+            ReflectionTestUtils.setField(updateStockService, "TRANSPORT", UpdateStockService.BATCH_TRANSPORT);
+            ReflectionTestUtils.setField(updateStockService, "COALESCE", false);
+        }
+    }
+
+    @Test
+    public void UpdateStockService_SendLanes_ReturnIndependentLanesSentInParallel() {
+        ReflectionTestUtils.setField(updateStockService, "TRANSPORT", UpdateStockService.SINGLE_TRANSPORT);
+        ReflectionTestUtils.setField(updateStockService, "COALESCE", true);
+        try {
+            holdBack(9L);
+            updateStockRepository.saveAll(List.of(consume(1L), consume(2L), consume(3L), consume(4L)));
+            productsStockStub.delay(Duration.ofMillis(300));
+
+            updateStockService.sendRequestToUpdateStock();
+
+            Assertions.assertThat(productsStockStub.getSingleCalls()).hasSize(4);
+            Assertions.assertThat(productsStockStub.getMaxInFlight()).isGreaterThan(1);
+            Assertions.assertThat(updateStockRepository.findAllBySent(false)).hasSize(2);
+        } finally {
+            ReflectionTestUtils.setField(updateStockService, "TRANSPORT", UpdateStockService.BATCH_TRANSPORT);
+            ReflectionTestUtils.setField(updateStockService, "COALESCE", false);
+        }
+    }
+
+    @Test
+    public void UpdateStockService_RequestDrain_ReturnRowsSentAsynchronously() throws InterruptedException {
+        updateStockRepository.saveAll(List.of(consume(1L), consume(2L)));
+
+        updateStockService.requestDrain();
+
+        for (int i = 0; i < 50 && !updateStockRepository.findAllBySent(false).isEmpty(); i++) {
+            Thread.sleep(100);
+        }
+
+        Assertions.assertThat(updateStockRepository.findAllBySent(false)).isEmpty();
+        Assertions.assertThat(productsStockStub.getBatchRequests()).hasSize(1);
+    }
+
+    @Test
+    public void UpdateStockService_SendBatches_ReturnConnectionPoolMetrics() {
+        updateStockRepository.saveAll(List.of(consume(1L)));
+
+        updateStockService.sendRequestToUpdateStock();
+
+        Assertions.assertThat(meterRegistry.get("httpcomponents.httpclient.pool.total.max")
+                .tag("httpclient", "ms-products").gauge().value()).isEqualTo(50.0);
+        Assertions.assertThat(meterRegistry.get("httpcomponents.httpclient.pool.total.connections")
+                .tag("httpclient", "ms-products").tag("state", "available").gauge().value()).isGreaterThanOrEqualTo(1.0);
+    }
+
+    @Test
+    public void UpdateStockService_SendBatches_ReturnOutboxMetrics() {
+        productsStockStub.failProduct(2L);
+
+        updateStockRepository.saveAll(List.of(consume(1L), consume(2L)));
+
+        Assertions.assertThat(meterRegistry.get("update.stock.backlog").gauge().value()).isEqualTo(2.0);
+        Assertions.assertThat(meterRegistry.get("update.stock.oldest.age").timeGauge().value()).isGreaterThanOrEqualTo(0.0);
+
+        double sent = rows("sent");
+        double failed = rows("failed");
+        long dispatched = meterRegistry.find("update.stock.dispatch").tag("uri", "stock/batch").timers().stream()
+                .mapToLong(Timer::count).sum();
+        long drains = meterRegistry.find("update.stock.drain.rows").summaries().stream()
+                .mapToLong(DistributionSummary::count).sum();
+
+        updateStockService.sendRequestToUpdateStock();
+
+        Assertions.assertThat(meterRegistry.get("update.stock.backlog").gauge().value()).isEqualTo(1.0);
+        Assertions.assertThat(rows("sent") - sent).isEqualTo(1.0);
+        Assertions.assertThat(rows("failed") - failed).isEqualTo(1.0);
+        Assertions.assertThat(meterRegistry.get("update.stock.dispatch").tag("uri", "stock/batch").timer().count())
+                .isEqualTo(dispatched + 1);
+        Assertions.assertThat(meterRegistry.get("update.stock.drain.rows").summary().count()).isEqualTo(drains + 1);
+    }
+
+    private double rows(String outcome) {
+        Counter counter = meterRegistry.find("update.stock.rows").tag("uri", "stock/consume").tag("outcome", outcome).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    // a deferred row of the product holds back its next row, which then starts the part of the page sent
+    // unchanged instead of being coalesced
+    private void holdBack(Long productId) {
+        productsStockStub.failProduct(productId);
+        UpdateStock failed = updateStockRepository.save(consume(productId));
+
+        updateStockService.sendRequestToUpdateStock();
+
+        deferUntil(failed.getId(), Instant.now().plusSeconds(3600));
+        updateStockRepository.save(consume(productId));
+        productsStockStub.reset();
+    }
+
+    private void deferUntil(Long id, Instant nextAttemptAt) {
+        UpdateStock updateStock = updateStockRepository.findById(id).get();
+        updateStock.setNextAttemptAt(nextAttemptAt);
+        updateStockRepository.save(updateStock);
+
+        List<UpdateStockHold> holds = updateStockHoldRepository.findAll().stream()
+                .filter(hold -> hold.getUpdateStockId().equals(id))
+                .toList();
+        holds.forEach(hold -> hold.setHeldUntil(nextAttemptAt));
+        updateStockHoldRepository.saveAll(holds);
+    }
+
+    private static UpdateStock add(Long productId) {
+        return UpdateStock.builder()
+                .request("[{\"productId\":" + productId + ",\"stock\":1}]")
+                .uri("stock/add")
+                .sent(false)
+                .build();
+    }
+
+    private static UpdateStock consume(Long productId) {
+        return UpdateStock.builder()
+                .request("[{\"productId\":" + productId + ",\"stock\":1}]")
+                .uri("stock/consume")
+                .sent(false)
+                .build();
+    }
+
+    private static ProductsStockStub startStub() {
+        try {
+            return new ProductsStockStub();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.frcalderon.commands.stub;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ProductsStockStub implements AutoCloseable {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final List<String> singleRequests = new CopyOnWriteArrayList<>();
+
+    private final List<String> singleCalls = new CopyOnWriteArrayList<>();
+
+    private final List<JsonNode> batchRequests = new CopyOnWriteArrayList<>();
+
+    private final Set<Long> failingProducts = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private volatile Duration delay = Duration.ZERO;
+
+    public ProductsStockStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/products/stock/add", this::handleSingle);
+        server.createContext("/products/stock/consume", this::handleSingle);
+        server.createContext("/products/stock/batch", this::handleBatch);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/products/";
+    }
+
+    public List<String> getSingleRequests() {
+        return singleRequests;
+    }
+
+    public List<String> getSingleCalls() {
+        return singleCalls;
+    }
+
+    public List<JsonNode> getBatchRequests() {
+        return batchRequests;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    public void delay(Duration delay) {
+        this.delay = delay;
+    }
+
+    public void failProduct(Long productId) {
+        failingProducts.add(productId);
+    }
+
+    public void recoverProduct(Long productId) {
+        failingProducts.remove(productId);
+    }
+
+    public void reset() {
+        singleRequests.clear();
+        singleCalls.clear();
+        batchRequests.clear();
+        failingProducts.clear();
+        maxInFlight.set(0);
+        delay = Duration.ZERO;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleSingle(HttpExchange exchange) throws IOException {
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            singleRequests.add(body);
+            singleCalls.add(exchange.getRequestURI().getPath().substring("/products/".length()) + " " + body);
+            Thread.sleep(delay.toMillis());
+
+            respond(exchange, fails(objectMapper.readTree(body)) ? 500 : 200, "");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "");
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        JsonNode envelope = objectMapper.readTree(exchange.getRequestBody());
+        batchRequests.add(envelope);
+
+        ObjectNode response = objectMapper.createObjectNode();
+        ArrayNode results = response.putArray("results");
+        for (JsonNode entry : envelope.get("entries")) {
+            boolean fails = fails(entry.get("request"));
+            results.addObject()
+                    .put("id", entry.get("id").asInt())
+                    .put("success", !fails)
+                    .put("error", fails ? "Product not available" : null);
+        }
+
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        respond(exchange, 200, objectMapper.writeValueAsString(response));
+    }
+
+    private boolean fails(JsonNode requests) {
+        for (JsonNode request : requests) {
+            if (failingProducts.contains(request.get("productId").asLong())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+}